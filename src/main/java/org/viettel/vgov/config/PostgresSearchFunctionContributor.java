@@ -0,0 +1,33 @@
+package org.viettel.vgov.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers PostgreSQL search functions for use in JPQL and Criteria queries.
+ * fts_match and fts_rank take a work log's task feature, description and query; the match is rendered
+ * with the {@code @@} operator over work_log_document (sql/work-log-search.sql) so the planner can use
+ * its GIN expression index. search_normalize is defined in sql/trigram-search.sql and matches the
+ * trigram index expressions.
+ * Registered through META-INF/services.
+ */
+public class PostgresSearchFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicTypeRegistry basicTypeRegistry = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        functionContributions.getFunctionRegistry().registerPattern(
+                "fts_match",
+                "(work_log_document(?1, ?2) @@ websearch_to_tsquery('simple', ?3))",
+                basicTypeRegistry.resolve(StandardBasicTypes.BOOLEAN));
+        functionContributions.getFunctionRegistry().registerPattern(
+                "fts_rank",
+                "ts_rank(work_log_document(?1, ?2), websearch_to_tsquery('simple', ?3))",
+                basicTypeRegistry.resolve(StandardBasicTypes.DOUBLE));
+        functionContributions.getFunctionRegistry().registerNamed(
+                "search_normalize",
+                basicTypeRegistry.resolve(StandardBasicTypes.STRING));
+    }
+}
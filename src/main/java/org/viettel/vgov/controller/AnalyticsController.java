@@ -4,11 +4,16 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.viettel.vgov.dto.response.AnalyticsResponseDto;
+import org.viettel.vgov.dto.response.CapacityForecastResponseDto;
+import org.viettel.vgov.dto.response.UtilizationResponseDto;
 import org.viettel.vgov.service.AnalyticsService;
+import org.viettel.vgov.service.CapacityForecastService;
+import org.viettel.vgov.service.UtilizationService;
 
 import java.time.LocalDate;
 
@@ -21,6 +26,8 @@ import java.time.LocalDate;
 public class AnalyticsController {
     
     private final AnalyticsService analyticsService;
+    private final UtilizationService utilizationService;
+    private final CapacityForecastService capacityForecastService;
     
     @Operation(summary = "Get project analytics", description = "Retrieve project analytics data (Admin/PM only)")
     @GetMapping("/projects")
@@ -48,7 +55,7 @@ public class AnalyticsController {
     
     @Operation(summary = "Get project timeline", description = "Retrieve project timeline and milestones")
     @GetMapping("/project/{id}/timeline")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @projectSecurityService.canAccessProject(#id, authentication.name)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @projectSecurityService.canAccessProject(#id)")
     public ResponseEntity<AnalyticsResponseDto> getProjectTimeline(@PathVariable Long id) {
         AnalyticsResponseDto timeline = analyticsService.getProjectTimeline(id);
         return ResponseEntity.ok(timeline);
@@ -82,4 +89,32 @@ public class AnalyticsController {
         AnalyticsResponseDto analytics = analyticsService.getProjectTimelineAnalytics(startDate, endDate);
         return ResponseEntity.ok(analytics);
     }
+    
+    @Operation(summary = "Get utilization history", description = "Retrieve organization, per-role and per-user allocation " +
+            "at the start of each week or month, replayed from membership and workload history (Admin only)")
+    @GetMapping("/utilization")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UtilizationResponseDto> getUtilization(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "week") String granularity) {
+        
+        // Default to the past 12 weeks
+        LocalDate endDate = to != null ? to : LocalDate.now();
+        LocalDate startDate = from != null ? from : endDate.minusWeeks(12);
+        
+        UtilizationResponseDto utilization = utilizationService.getUtilization(startDate, endDate, granularity);
+        return ResponseEntity.ok(utilization);
+    }
+    
+    @Operation(summary = "Get capacity forecast", description = "Project each active user's free capacity for the coming weeks " +
+            "from current memberships, their joined and left dates and project end dates (Admin only)")
+    @GetMapping("/capacity-forecast")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CapacityForecastResponseDto> getCapacityForecast(
+            @RequestParam(defaultValue = "26") int weeks,
+            @RequestParam(required = false) String role) {
+        CapacityForecastResponseDto forecast = capacityForecastService.getCapacityForecast(weeks, role);
+        return ResponseEntity.ok(forecast);
+    }
 }
@@ -8,8 +8,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.viettel.vgov.dto.response.NotificationResponseDto;
 import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.service.NotificationService;
@@ -27,7 +29,8 @@ public class NotificationController {
     
     private final NotificationService notificationService;
     
-    @Operation(summary = "Get user notifications with pagination", description = "Get paginated notifications for current user")
+    @Operation(summary = "Get user notifications with pagination", description = "Get paginated notifications for current user. " +
+            "Pass limit (and after for subsequent pages) to use cursor pagination, newest first")
     @GetMapping
     public ResponseEntity<PagedResponse<NotificationResponseDto>> getCurrentUserNotifications(
             @RequestParam(defaultValue = "0") int page,
@@ -35,7 +38,14 @@ public class NotificationController {
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
             @RequestParam(required = false) Boolean isRead,
-            @RequestParam(required = false) String notificationType) {
+            @RequestParam(required = false) String notificationType,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        
+        if (after != null || limit != null) {
+            return ResponseEntity.ok(notificationService.getCurrentUserNotificationsAfter(
+                    after, limit, isRead, notificationType));
+        }
         
         Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
@@ -69,6 +79,35 @@ public class NotificationController {
         return ResponseEntity.ok(Map.of("count", count));
     }
     
+    @Operation(summary = "Stream notifications", description = "Server-sent events for the current user: 'notification' events carry " +
+            "new notifications with their id as event id, 'notification-updated' events notifications that absorbed a repeated update, " +
+            "'unread-count' events the unread count, sent on connect and whenever it changes. " +
+            "Reconnect with Last-Event-ID to receive the notifications created meanwhile, which may repeat some already received, " +
+            "so clients should de-duplicate by id; a 'resync' event means too many were missed and the list should be reloaded")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return notificationService.streamCurrentUserNotifications(lastEventId);
+    }
+    
+    @Operation(summary = "Get notification preferences", description = "Get whether the current user receives project updates as a daily digest")
+    @GetMapping("/preferences")
+    public ResponseEntity<Map<String, Boolean>> getPreferences() {
+        boolean dailyDigest = notificationService.isDailyDigestEnabled();
+        return ResponseEntity.ok(Map.of("dailyDigest", dailyDigest));
+    }
+    
+    @Operation(summary = "Update notification preferences", description = "With dailyDigest, project updates are collected and " +
+            "delivered as one summary notification a day instead of one notification each")
+    @PutMapping("/preferences")
+    public ResponseEntity<Map<String, Boolean>> updatePreferences(@RequestBody Map<String, Boolean> request) {
+        Boolean dailyDigest = request.get("dailyDigest");
+        if (dailyDigest == null) {
+            throw new IllegalArgumentException("dailyDigest is required");
+        }
+        notificationService.setDailyDigestEnabled(dailyDigest);
+        return ResponseEntity.ok(Map.of("dailyDigest", dailyDigest));
+    }
+    
     @Operation(summary = "Mark notification as read", description = "Mark specific notification as read")
     @PutMapping("/{id}/read")
     public ResponseEntity<Map<String, String>> markAsRead(@PathVariable Long id) {
@@ -15,6 +15,7 @@ import org.viettel.vgov.dto.request.ProjectRequestDto;
 import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.dto.response.ProjectResponseDto;
 import org.viettel.vgov.dto.response.StandardResponse;
+import org.viettel.vgov.dto.response.SuggestionResponseDto;
 import org.viettel.vgov.dto.response.UserProjectHistoryResponseDto;
 import org.viettel.vgov.model.Project;
 import org.viettel.vgov.service.ProjectService;
@@ -32,21 +33,39 @@ public class ProjectController {
 
     private final ProjectService projectService;
 
-    @Operation(summary = "Get all projects", description = "List projects based on role permissions with filters - Admin: all projects, PM: managed projects, Others: assigned projects")
+    @Operation(summary = "Get all projects", description = "List projects based on role permissions with filters - Admin: all projects, PM: managed projects, Others: assigned projects. " +
+            "Pass limit (and after for subsequent pages) to use cursor pagination, newest first")
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
     public ResponseEntity<StandardResponse<PagedResponse<ProjectResponseDto>>> getAllProjects(
             @PageableDefault(size = 20) Pageable pageable,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String projectStatus,
-            @RequestParam(required = false) String projectType) {
+            @RequestParam(required = false) String projectType,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        if (after != null || limit != null) {
+            PagedResponse<ProjectResponseDto> projects = projectService.getProjectsAfter(search, projectStatus, projectType, after, limit);
+            return ResponseEntity.ok(StandardResponse.success(projects));
+        }
         PagedResponse<ProjectResponseDto> projects = projectService.getAllProjects(pageable, search, projectStatus, projectType);
         return ResponseEntity.ok(StandardResponse.success(projects));
     }
 
+    @Operation(summary = "Suggest projects", description = "Typeahead: top projects whose name or code matches q, " +
+            "ordered by similarity. Case- and diacritic-insensitive, limited to projects the user can list")
+    @GetMapping("/suggest")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
+    public ResponseEntity<StandardResponse<List<SuggestionResponseDto>>> suggestProjects(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        List<SuggestionResponseDto> suggestions = projectService.suggestProjects(q, limit);
+        return ResponseEntity.ok(StandardResponse.success(suggestions));
+    }
+
     @Operation(summary = "Get project by ID", description = "Get project details by ID - role-based access control")
     @GetMapping("/{id}")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @projectSecurityService.canAccessProject(#id, authentication.name)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @projectSecurityService.canAccessProject(#id)")
     public ResponseEntity<StandardResponse<ProjectResponseDto>> getProjectById(@PathVariable Long id) {
         ProjectResponseDto project = projectService.getProjectById(id);
         return ResponseEntity.ok(StandardResponse.success(project));
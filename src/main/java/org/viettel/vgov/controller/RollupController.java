@@ -0,0 +1,40 @@
+package org.viettel.vgov.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.viettel.vgov.dto.response.RollupStatusResponseDto;
+import org.viettel.vgov.dto.response.StandardResponse;
+import org.viettel.vgov.service.WorkLogRollupService;
+
+@RestController
+@RequestMapping("/api/admin/rollups")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Tag(name = "Work Log Rollups", description = "Maintenance of the daily and monthly work log rollups")
+@SecurityRequirement(name = "bearerAuth")
+public class RollupController {
+    
+    private final WorkLogRollupService workLogRollupService;
+    
+    @Operation(summary = "Rebuild rollups", description = "Recompute the daily and monthly rollups and project logged hours from all work logs " +
+            "and verify the result (Admin only)")
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StandardResponse<RollupStatusResponseDto>> rebuildRollups() {
+        RollupStatusResponseDto status = workLogRollupService.rebuild();
+        return ResponseEntity.ok(StandardResponse.success(status, "Rollups rebuilt successfully"));
+    }
+    
+    @Operation(summary = "Verify rollups", description = "Compare the rollups against a fresh aggregation of work logs (Admin only)")
+    @GetMapping("/verify")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StandardResponse<RollupStatusResponseDto>> verifyRollups() {
+        RollupStatusResponseDto status = workLogRollupService.verify();
+        return ResponseEntity.ok(StandardResponse.success(status));
+    }
+}
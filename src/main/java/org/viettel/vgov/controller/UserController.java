@@ -15,6 +15,7 @@ import org.viettel.vgov.dto.request.UserRequestDto;
 import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.dto.response.PmInfoResponseDto;
 import org.viettel.vgov.dto.response.StandardResponse;
+import org.viettel.vgov.dto.response.SuggestionResponseDto;
 import org.viettel.vgov.dto.response.UserResponseDto;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.service.UserService;
@@ -44,6 +45,17 @@ public class UserController {
         return ResponseEntity.ok(StandardResponse.success(users));
     }
     
+    @Operation(summary = "Suggest users", description = "Typeahead: top users whose name, email or employee code matches q, " +
+            "ordered by similarity. Case- and diacritic-insensitive (Admin and PM)")
+    @GetMapping("/suggest")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PM')")
+    public ResponseEntity<StandardResponse<List<SuggestionResponseDto>>> suggestUsers(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        List<SuggestionResponseDto> suggestions = userService.suggestUsers(q, limit);
+        return ResponseEntity.ok(StandardResponse.success(suggestions));
+    }
+    
     @Operation(summary = "Get available user roles", description = "Get list of available user roles (Admin only)")
     @GetMapping("/roles")
     @PreAuthorize("hasRole('ADMIN')")
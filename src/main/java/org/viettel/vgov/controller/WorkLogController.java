@@ -5,14 +5,23 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.viettel.vgov.dto.request.WeeklyTimesheetRequestDto;
 import org.viettel.vgov.dto.request.WorkLogRequestDto;
+import org.viettel.vgov.dto.response.PagedResponse;
+import org.viettel.vgov.dto.response.WorkLogImportResponseDto;
 import org.viettel.vgov.dto.response.WorkLogResponseDto;
+import org.viettel.vgov.service.WorkLogImportService;
 import org.viettel.vgov.service.WorkLogService;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -25,10 +34,13 @@ import java.util.Map;
 public class WorkLogController {
     
     private final WorkLogService workLogService;
+    private final WorkLogImportService workLogImportService;
     
-    @Operation(summary = "Get all work logs", description = "Get all work logs with role-based filtering and search")
+    @Operation(summary = "Get all work logs", description = "Get paginated work logs with role-based filtering and full-text search. " +
+            "Use sortBy=relevance with search to rank by match quality. " +
+            "Pass limit (and after for subsequent pages) to use cursor pagination instead of page/size")
     @GetMapping
-    public ResponseEntity<List<WorkLogResponseDto>> getAllWorkLogs(
+    public ResponseEntity<PagedResponse<WorkLogResponseDto>> getAllWorkLogs(
             @RequestParam(required = false) String search,
             @RequestParam(required = false) Long projectId,
             @RequestParam(required = false) Long userId,
@@ -38,16 +50,48 @@ public class WorkLogController {
             @RequestParam(required = false) Double maxHours,
             @RequestParam(required = false) String taskFeature,
             @RequestParam(required = false, defaultValue = "workDate") String sortBy,
-            @RequestParam(required = false, defaultValue = "desc") String sortDir) {
-        List<WorkLogResponseDto> workLogs = workLogService.getAllWorkLogs(
+            @RequestParam(required = false, defaultValue = "desc") String sortDir,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        if (after != null || limit != null) {
+            return ResponseEntity.ok(workLogService.getWorkLogsAfter(
+                search, projectId, userId, workDateFrom, workDateTo,
+                minHours, maxHours, taskFeature, sortBy, sortDir, after, limit));
+        }
+        PagedResponse<WorkLogResponseDto> workLogs = workLogService.getAllWorkLogs(
             search, projectId, userId, workDateFrom, workDateTo,
-            minHours, maxHours, taskFeature, sortBy, sortDir);
+            minHours, maxHours, taskFeature, sortBy, sortDir, page, size);
         return ResponseEntity.ok(workLogs);
     }
     
+    @Operation(summary = "Export work logs", description = "Stream work logs as CSV or NDJSON with the same role-based filtering as the list endpoint")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportWorkLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String workDateFrom,
+            @RequestParam(required = false) String workDateTo,
+            @RequestParam(required = false) Double minHours,
+            @RequestParam(required = false) Double maxHours,
+            @RequestParam(required = false) String taskFeature,
+            @RequestParam(required = false, defaultValue = "workDate") String sortBy,
+            @RequestParam(required = false, defaultValue = "desc") String sortDir) {
+        StreamingResponseBody body = workLogService.exportWorkLogs(format, search, projectId, userId,
+            workDateFrom, workDateTo, minHours, maxHours, taskFeature, sortBy, sortDir);
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.APPLICATION_NDJSON : new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"worklogs." + (ndjson ? "ndjson" : "csv") + "\"")
+            .body(body);
+    }
+    
     @Operation(summary = "Get user work logs", description = "Get work logs for specific user (Admin/PM or own logs)")
     @GetMapping("/user/{userId}")
-    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @workLogService.canAccessUserWorkLogs(#userId, authentication.name)")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PM') or @workLogService.canAccessUserWorkLogs(#userId)")
     public ResponseEntity<List<WorkLogResponseDto>> getWorkLogsByUserId(@PathVariable Long userId) {
         List<WorkLogResponseDto> workLogs = workLogService.getWorkLogsByUserId(userId);
         return ResponseEntity.ok(workLogs);
@@ -68,6 +112,32 @@ public class WorkLogController {
         return ResponseEntity.status(HttpStatus.CREATED).body(workLog);
     }
     
+    @Operation(summary = "Bulk import work logs", description = "Import a JSON array of work logs. " +
+            "Rows are validated independently; the response reports the outcome of every row")
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
+    public ResponseEntity<WorkLogImportResponseDto> importWorkLogs(@RequestBody List<WorkLogRequestDto> requestDtos) {
+        return ResponseEntity.ok(workLogImportService.importWorkLogs(requestDtos));
+    }
+    
+    @Operation(summary = "Bulk import work logs from CSV", description = "Import a CSV upload with header columns " +
+            "projectId, userId, workDate, hoursWorked, taskFeature, workDescription")
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
+    public ResponseEntity<WorkLogImportResponseDto> importWorkLogsCsv(@RequestParam("file") MultipartFile file) {
+        return ResponseEntity.ok(workLogImportService.importWorkLogsCsv(file));
+    }
+    
+    @Operation(summary = "Save weekly timesheet", description = "Apply a project x day grid of hours for an ISO week " +
+            "(e.g. 2024-W05). Filled cells are created or updated, cleared cells are deleted")
+    @PutMapping("/week/{isoWeek}")
+    @PreAuthorize("hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
+    public ResponseEntity<List<WorkLogResponseDto>> saveWeeklyTimesheet(
+            @PathVariable String isoWeek,
+            @Valid @RequestBody WeeklyTimesheetRequestDto requestDto) {
+        return ResponseEntity.ok(workLogService.saveWeeklyTimesheet(isoWeek, requestDto));
+    }
+    
     @Operation(summary = "Update work log", description = "Update existing work log entry")
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('PM') or hasRole('DEV') or hasRole('BA') or hasRole('TEST')")
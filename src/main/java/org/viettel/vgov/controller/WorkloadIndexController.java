@@ -0,0 +1,41 @@
+package org.viettel.vgov.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.viettel.vgov.dto.response.StandardResponse;
+import org.viettel.vgov.dto.response.WorkloadIndexStatusResponseDto;
+import org.viettel.vgov.service.WorkloadIndexService;
+
+@RestController
+@RequestMapping("/api/admin/workload-index")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Tag(name = "Workload Index", description = "Maintenance of the in-memory user workload index")
+@SecurityRequirement(name = "bearerAuth")
+public class WorkloadIndexController {
+
+    private final WorkloadIndexService workloadIndexService;
+
+    @Operation(summary = "Reload workload index", description = "Reload this instance's workload index from project members " +
+            "and verify the result (Admin only)")
+    @PostMapping("/reload")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StandardResponse<WorkloadIndexStatusResponseDto>> reloadIndex() {
+        workloadIndexService.reload();
+        WorkloadIndexStatusResponseDto status = workloadIndexService.verify();
+        return ResponseEntity.ok(StandardResponse.success(status, "Workload index reloaded successfully"));
+    }
+
+    @Operation(summary = "Verify workload index", description = "Compare this instance's workload index against project members (Admin only)")
+    @GetMapping("/verify")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StandardResponse<WorkloadIndexStatusResponseDto>> verifyIndex() {
+        WorkloadIndexStatusResponseDto status = workloadIndexService.verify();
+        return ResponseEntity.ok(StandardResponse.success(status));
+    }
+}
@@ -1,11 +1,13 @@
 package org.viettel.vgov.dto.request;
 
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import org.viettel.vgov.model.Project;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
@@ -33,4 +35,7 @@ public class ProjectRequestDto {
     private Project.Status status;
     
     private String description;
+    
+    @DecimalMin(value = "0.01", message = "Estimated effort must be greater than 0")
+    private BigDecimal estimatedEffortHours;
 }
@@ -0,0 +1,39 @@
+package org.viettel.vgov.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class WeeklyTimesheetRequestDto {
+    
+    // Optional field: If provided, PM submits the timesheet of this user (only PM can do this)
+    // If null, the timesheet belongs to the current user
+    private Long userId;
+    
+    @NotEmpty(message = "At least one project row is required")
+    @Valid
+    private List<Row> rows;
+    
+    @Data
+    public static class Row {
+        
+        @NotNull(message = "Project ID is required")
+        private Long projectId;
+        
+        // Applied to every non-empty cell of the row; null keeps the stored value
+        private String taskFeature;
+        
+        // Required when the row adds a cell; otherwise null or blank keeps the stored value
+        private String workDescription;
+        
+        // Hours per day of the week; a missing, null or zero day clears that cell
+        private Map<DayOfWeek, BigDecimal> hours;
+    }
+}
@@ -36,6 +36,7 @@ public class AnalyticsResponseDto {
     private List<ProjectTimelineDto> projectMilestones;
     private List<WorkLogSummaryDto> workLogTrends;
     private List<MonthlyProjectStatusDto> monthlyProjectStatus;
+    private List<BurnUpPointDto> burnUp;
     
     // Recent activity
     private List<RecentActivityDto> recentActivities;
@@ -60,7 +61,23 @@ public class AnalyticsResponseDto {
         private LocalDate startDate;
         private LocalDate endDate;
         private String status;
+        // Logged hours against the estimate, capped at 100; null when the project has no estimate
         private BigDecimal completionPercentage;
+        private BigDecimal estimatedEffortHours;
+        private BigDecimal loggedHours;
+        // Average hours logged per calendar day since the start date
+        private BigDecimal burnRateHoursPerDay;
+        // Day the estimate is reached at the current burn rate; null when it cannot be projected
+        private LocalDate projectedEndDate;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BurnUpPointDto {
+        private LocalDate date;
+        private BigDecimal hours;
+        private BigDecimal cumulativeHours;
     }
     
     @Data
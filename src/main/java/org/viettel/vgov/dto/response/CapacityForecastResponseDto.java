@@ -0,0 +1,37 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapacityForecastResponseDto {
+    
+    private String role;
+    
+    // Monday of each forecast week, starting with the current week; every series holds one value per week
+    private List<LocalDate> weekStarts;
+    
+    // Sum of the users' free capacity, in percent of one full-time person; over-allocation does not offset it
+    private List<BigDecimal> totalAvailableCapacity;
+    private List<Integer> overallocatedUsers;
+    
+    private List<UserCapacityDto> users;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserCapacityDto {
+        private Long userId;
+        private String fullName;
+        private String role;
+        // 100 minus the workload averaged over the days of each week; negative when over-allocated
+        private List<BigDecimal> availableCapacity;
+    }
+}
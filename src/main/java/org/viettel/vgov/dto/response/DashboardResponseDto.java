@@ -16,6 +16,9 @@ public class DashboardResponseDto {
     private List<WorkLogResponseDto> recentWorkLogs;
     private long unreadNotificationCount;
     
+    // Sections left empty because they failed or timed out
+    private List<String> degradedSections;
+    
     @Data
     public static class UserStats {
         private long totalUsers;
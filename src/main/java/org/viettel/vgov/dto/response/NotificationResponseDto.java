@@ -25,5 +25,9 @@ public class NotificationResponseDto {
     
     private Boolean isRead;
     
+    private Integer occurrenceCount;
+    
     private LocalDateTime createdAt;
+    
+    private LocalDateTime lastOccurredAt;
 }
@@ -14,6 +14,8 @@ public class PagedResponse<T> {
     
     private List<T> items;
     private PaginationInfo pagination;
+    // Opaque cursor for the next page in cursor mode, null when there are no more items
+    private String nextCursor;
     
     public static <T> PagedResponse<T> of(Page<T> page) {
         return new PagedResponse<>(
@@ -23,7 +25,8 @@ public class PagedResponse<T> {
                 page.getSize(),
                 page.getTotalElements(),
                 page.getTotalPages()
-            )
+            ),
+            null
         );
     }
     
@@ -31,10 +34,15 @@ public class PagedResponse<T> {
         int totalPages = (int) Math.ceil((double) total / size);
         return new PagedResponse<>(
             items,
-            new PaginationInfo(page, size, total, totalPages)
+            new PaginationInfo(page, size, total, totalPages),
+            null
         );
     }
     
+    public static <T> PagedResponse<T> ofCursor(List<T> items, String nextCursor) {
+        return new PagedResponse<>(items, null, nextCursor);
+    }
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -3,6 +3,7 @@ package org.viettel.vgov.dto.response;
 import lombok.Data;
 import org.viettel.vgov.model.Project;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -29,6 +30,10 @@ public class ProjectResponseDto {
     
     private String description;
     
+    private BigDecimal estimatedEffortHours;
+    
+    private BigDecimal loggedHours;
+    
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
@@ -0,0 +1,23 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupStatusResponseDto {
+    
+    private long dailyRows;
+    private long monthlyRows;
+    
+    // Keys that are missing, extra or carry different totals than a fresh aggregation of work_logs
+    private long dailyMismatches;
+    private long monthlyMismatches;
+    
+    // Projects whose logged hours differ from the sum of their work logs
+    private long projectHoursMismatches;
+    
+    private boolean consistent;
+}
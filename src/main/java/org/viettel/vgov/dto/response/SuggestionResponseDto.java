@@ -0,0 +1,31 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Typeahead match: a lightweight reference to a project or user with its similarity score (0..1).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionResponseDto {
+    
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+    
+    private Long id;
+    private String code;
+    private String name;
+    // Secondary label, e.g. the user's email; null for projects
+    private String detail;
+    private Double score;
+    
+    public static int resolveLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,37 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UtilizationResponseDto {
+    
+    private String granularity;
+    
+    // Start of each period; every series holds one value per period, the allocation in effect at its start
+    private List<LocalDate> periods;
+    
+    // Average allocation percentage over active non-admin users
+    private List<BigDecimal> organization;
+    private Map<String, List<BigDecimal>> byRole;
+    
+    private List<UserUtilizationDto> users;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserUtilizationDto {
+        private Long userId;
+        private String fullName;
+        private String role;
+        private List<BigDecimal> allocation;
+    }
+}
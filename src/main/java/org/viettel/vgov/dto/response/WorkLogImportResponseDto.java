@@ -0,0 +1,33 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkLogImportResponseDto {
+
+    private int totalRows;
+    private int importedCount;
+    private int failedCount;
+    private List<RowResult> rows;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowResult {
+        // 1-based position of the row in the submitted array or CSV data
+        private int row;
+        private Status status;
+        private Long workLogId;
+        private String error;
+    }
+
+    public enum Status {
+        IMPORTED, FAILED
+    }
+}
@@ -0,0 +1,21 @@
+package org.viettel.vgov.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkloadIndexStatusResponseDto {
+    
+    private int indexedUsers;
+    
+    // Users whose indexed workload or project count differs from project_members (first 100 ids)
+    private int mismatchedUsers;
+    private List<Long> mismatchedUserIds;
+    
+    private boolean consistent;
+}
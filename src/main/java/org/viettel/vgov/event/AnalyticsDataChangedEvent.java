@@ -0,0 +1,24 @@
+package org.viettel.vgov.event;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published inside a write transaction when data shown by analytics or the dashboard changes.
+ * Project ids cover changes to a project, its members or its work logs; user ids cover changes
+ * to a user's own record, which also appears in every project they belong to.
+ */
+public record AnalyticsDataChangedEvent(Set<Long> projectIds, Set<Long> userIds) {
+
+    public static AnalyticsDataChangedEvent ofProject(Long projectId) {
+        return new AnalyticsDataChangedEvent(Set.of(projectId), Set.of());
+    }
+
+    public static AnalyticsDataChangedEvent ofProjects(Collection<Long> projectIds) {
+        return new AnalyticsDataChangedEvent(Set.copyOf(projectIds), Set.of());
+    }
+
+    public static AnalyticsDataChangedEvent ofUser(Long userId) {
+        return new AnalyticsDataChangedEvent(Set.of(), Set.of(userId));
+    }
+}
@@ -0,0 +1,35 @@
+package org.viettel.vgov.event;
+
+import org.viettel.vgov.model.Notification;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Published inside a write transaction when notifications are created, coalesced, read or deleted.
+ * Created and coalesced notifications are listed in full; user ids name every user whose unread count
+ * may have changed.
+ */
+public record NotificationsChangedEvent(List<Notification> created, List<Notification> updated, Set<Long> userIds) {
+
+    public static NotificationsChangedEvent ofCreated(List<Notification> created) {
+        return of(created, List.of());
+    }
+
+    public static NotificationsChangedEvent ofUpdated(List<Notification> updated) {
+        return of(List.of(), updated);
+    }
+
+    public static NotificationsChangedEvent of(List<Notification> created, List<Notification> updated) {
+        return new NotificationsChangedEvent(List.copyOf(created), List.copyOf(updated),
+                Stream.concat(created.stream(), updated.stream())
+                        .map(notification -> notification.getUser().getId())
+                        .collect(Collectors.toUnmodifiableSet()));
+    }
+
+    public static NotificationsChangedEvent ofUser(Long userId) {
+        return new NotificationsChangedEvent(List.of(), List.of(), Set.of(userId));
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 import org.viettel.vgov.dto.response.StandardResponse;
 
 import java.util.HashMap;
@@ -92,6 +93,12 @@ public class GlobalExceptionHandler {
                 .body(StandardResponse.error("INVALID_ROLE_CHANGE", ex.getMessage()));
     }
 
+    // A client disconnected from a streaming response, so there is no one to respond to
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsableException(AsyncRequestNotUsableException ex) {
+        logger.debug("Client disconnected: {}", ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<StandardResponse<Object>> handleRuntimeException(
             RuntimeException ex, WebRequest request) {
@@ -14,7 +14,9 @@ public class NotificationMapper {
         dto.setMessage(entity.getMessage());
         dto.setNotificationType(entity.getNotificationType());
         dto.setIsRead(entity.getIsRead());
+        dto.setOccurrenceCount(entity.getOccurrenceCount());
         dto.setCreatedAt(entity.getCreatedAt());
+        dto.setLastOccurredAt(entity.getLastOccurredAt());
         
         if (entity.getRelatedProject() != null) {
             dto.setRelatedProjectId(entity.getRelatedProject().getId());
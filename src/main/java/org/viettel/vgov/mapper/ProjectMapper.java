@@ -5,6 +5,8 @@ import org.viettel.vgov.dto.request.ProjectRequestDto;
 import org.viettel.vgov.dto.response.ProjectResponseDto;
 import org.viettel.vgov.model.Project;
 
+import java.math.BigDecimal;
+
 @Component
 public class ProjectMapper implements BaseMapper<Project, ProjectRequestDto, ProjectResponseDto> {
     
@@ -19,6 +21,7 @@ public class ProjectMapper implements BaseMapper<Project, ProjectRequestDto, Pro
         project.setProjectType(requestDto.getProjectType());
         project.setStatus(requestDto.getStatus());
         project.setDescription(requestDto.getDescription());
+        project.setEstimatedEffortHours(requestDto.getEstimatedEffortHours());
         return project;
     }
     
@@ -35,6 +38,9 @@ public class ProjectMapper implements BaseMapper<Project, ProjectRequestDto, Pro
         dto.setProjectType(entity.getProjectType());
         dto.setStatus(entity.getStatus());
         dto.setDescription(entity.getDescription());
+        dto.setEstimatedEffortHours(entity.getEstimatedEffortHours());
+        // Not populated on a project that was just inserted, which has no work logs yet
+        dto.setLoggedHours(entity.getLoggedHours() != null ? entity.getLoggedHours() : BigDecimal.ZERO);
         dto.setCreatedAt(entity.getCreatedAt());
         dto.setUpdatedAt(entity.getUpdatedAt());
         
@@ -5,11 +5,14 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "notifications")
+// Marking as read then writes only is_read, leaving the fields that coalescing updates in place
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -43,7 +46,15 @@ public class Notification {
     @Column(name = "is_read")
     private Boolean isRead = false;
     
+    // Notifications merged into this one by coalescing; the latest of them set the title and message
+    @Column(name = "occurrence_count", nullable = false)
+    private Integer occurrenceCount = 1;
+    
+    @Column(name = "last_occurred_at")
+    private LocalDateTime lastOccurredAt;
+    
+    // Partition key of the notifications table, see sql/notification-partitions.sql
     @CreationTimestamp
-    @Column(name = "created_at", updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 }
@@ -0,0 +1,42 @@
+package org.viettel.vgov.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Project update held back for a user who receives daily digests, until NotificationDigestService sends it
+@Entity
+@Table(name = "notification_digest_entries", indexes = {
+        @Index(name = "idx_notification_digest_entries_user", columnList = "user_id, related_project_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationDigestEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    // No foreign key, so pending entries do not hold up deleting the project
+    @Column(name = "related_project_id")
+    private Long relatedProjectId;
+    
+    @Column(name = "notification_type", nullable = false, length = 50)
+    private String notificationType;
+    
+    @Column(name = "title", nullable = false)
+    private String title;
+    
+    @Column(name = "message", nullable = false, columnDefinition = "TEXT")
+    private String message;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Set;
@@ -51,6 +52,14 @@ public class Project {
     @Column(name = "description", columnDefinition = "TEXT")
     private String description;
     
+    @Column(name = "estimated_effort_hours", precision = 12, scale = 2)
+    private BigDecimal estimatedEffortHours;
+    
+    // Total hours of the project's work logs, maintained by WorkLogRollupService and never written through the entity
+    @Column(name = "logged_hours", insertable = false, updatable = false,
+            columnDefinition = "numeric(12,2) NOT NULL DEFAULT 0")
+    private BigDecimal loggedHours;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
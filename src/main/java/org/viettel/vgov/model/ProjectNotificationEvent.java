@@ -0,0 +1,54 @@
+package org.viettel.vgov.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Outbox entry for a notification to every active member of a project except the actor, written in the
+// transaction of the change it reports and deleted once the notifications are inserted
+@Entity
+@Table(name = "project_notification_outbox", indexes = {
+        @Index(name = "idx_project_notification_outbox_due", columnList = "next_attempt_at, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectNotificationEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // No foreign keys, so pending entries do not hold up deleting the project or the actor
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+    
+    @Column(name = "actor_user_id")
+    private Long actorUserId;
+    
+    @Column(name = "title", nullable = false)
+    private String title;
+    
+    @Column(name = "message", nullable = false, columnDefinition = "TEXT")
+    private String message;
+    
+    @Column(name = "notification_type", nullable = false, length = 50)
+    private String notificationType;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
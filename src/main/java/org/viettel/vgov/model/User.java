@@ -48,6 +48,20 @@ public class User {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // Number of the user's unread notifications, maintained by UnreadNotificationCountService and never written through the entity
+    @Column(name = "unread_notification_count", insertable = false, updatable = false,
+            columnDefinition = "integer NOT NULL DEFAULT 0")
+    private Integer unreadNotificationCount;
+    
+    // Tokens issued before this instant are rejected; set through TokenRevocationCache
+    @Column(name = "tokens_valid_from", insertable = false, updatable = false, columnDefinition = "timestamp(3)")
+    private LocalDateTime tokensValidFrom;
+    
+    // Whether project updates reach the user in a daily digest instead of one by one; set through NotificationService
+    @Column(name = "notification_digest", insertable = false, updatable = false,
+            columnDefinition = "boolean NOT NULL DEFAULT false")
+    private Boolean notificationDigest;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,41 @@
+package org.viettel.vgov.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Allocation of every project member at the start of a week (Monday 00:00), covering all allocation
+// events before that instant; the arrays are parallel, one element per member with a non-zero workload
+@Entity
+@Table(name = "utilization_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UtilizationSnapshot {
+    
+    @Id
+    @Column(name = "week_start")
+    private LocalDate weekStart;
+    
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "member_ids", nullable = false)
+    private long[] memberIds;
+    
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "user_ids", nullable = false)
+    private long[] userIds;
+    
+    // Workload percentage x 100
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "basis_points", nullable = false)
+    private int[] basisPoints;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
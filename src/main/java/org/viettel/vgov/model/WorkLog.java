@@ -15,14 +15,20 @@ import java.time.LocalDateTime;
 @Table(name = "work_logs",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"user_id", "project_id", "work_date"})
+       },
+       indexes = {
+           @Index(name = "idx_work_logs_created_at", columnList = "created_at, id"),
+           @Index(name = "idx_work_logs_user_created_at", columnList = "user_id, created_at, id")
        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class WorkLog {
     
+    // Pooled sequence (not IDENTITY) so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_logs_seq")
+    @SequenceGenerator(name = "work_logs_seq", sequenceName = "work_logs_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
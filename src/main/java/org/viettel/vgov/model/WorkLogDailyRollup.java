@@ -0,0 +1,46 @@
+package org.viettel.vgov.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Hours and entry count per (user, project, day), maintained incrementally from work log changes
+@Entity
+@Table(name = "work_log_daily_rollups",
+       uniqueConstraints = {
+           @UniqueConstraint(columnNames = {"user_id", "project_id", "work_date"})
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkLogDailyRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Project project;
+    
+    @Column(name = "work_date", nullable = false)
+    private LocalDate workDate;
+    
+    @Column(name = "total_hours", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalHours;
+    
+    @Column(name = "entry_count", nullable = false)
+    private Integer entryCount;
+}
@@ -0,0 +1,44 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.viettel.vgov.model.NotificationDigestEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationDigestEntryRepository extends JpaRepository<NotificationDigestEntry, Long> {
+    
+    // Holds back a project update for the active members, except the actor, who receive daily digests
+    @Modifying
+    @Query(value = "INSERT INTO notification_digest_entries (user_id, related_project_id, notification_type, title, message, created_at) " +
+           "SELECT DISTINCT pm.user_id, pm.project_id, :notificationType, :title, :message, CAST(:createdAt AS timestamp) " +
+           "FROM project_members pm JOIN users u ON u.id = pm.user_id " +
+           "WHERE pm.project_id = :projectId AND pm.is_active = true AND u.notification_digest = true " +
+           "AND (CAST(:actorUserId AS bigint) IS NULL OR pm.user_id <> :actorUserId)", nativeQuery = true)
+    int insertForDigestProjectMembers(@Param("projectId") Long projectId,
+                                      @Param("actorUserId") Long actorUserId,
+                                      @Param("title") String title,
+                                      @Param("message") String message,
+                                      @Param("notificationType") String notificationType,
+                                      @Param("createdAt") LocalDateTime createdAt);
+    
+    // Deletes every entry visible to the statement and returns them summarized as
+    // [userId, projectId, projectName, count, latestMessage] per user and project, so that exactly the
+    // summarized entries are removed
+    @Query(value = "WITH taken AS (DELETE FROM notification_digest_entries RETURNING id, user_id, related_project_id, message) " +
+           "SELECT e.user_id, e.related_project_id, p.project_name, COUNT(*), " +
+           "(array_agg(e.message ORDER BY e.id DESC))[1] " +
+           "FROM taken e LEFT JOIN projects p ON p.id = e.related_project_id " +
+           "GROUP BY e.user_id, e.related_project_id, p.project_name " +
+           "ORDER BY e.user_id, p.project_name", nativeQuery = true)
+    List<Object[]> takeSummaries();
+    
+    // Serializes digest runs across instances until the transaction ends
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    int lockForDigest(@Param("key") long key);
+}
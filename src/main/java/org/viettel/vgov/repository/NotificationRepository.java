@@ -1,5 +1,6 @@
 package org.viettel.vgov.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,10 +10,13 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.viettel.vgov.model.Notification;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface NotificationRepository extends JpaRepository<Notification, Long> {
+public interface NotificationRepository extends JpaRepository<Notification, Long>, NotificationRepositoryCustom {
     
     List<Notification> findByUserIdOrderByCreatedAtDesc(Long userId);
     
@@ -30,7 +34,18 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
-    void markAllAsReadForUser(@Param("userId") Long userId);
+    int markAllAsReadForUser(@Param("userId") Long userId);
+    
+    // Marks the notification read only if it was unread, so concurrent calls count it once
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :id AND n.user.id = :userId AND n.isRead = false")
+    int markAsReadForUser(@Param("id") Long id, @Param("userId") Long userId);
+    
+    boolean existsByIdAndUserId(Long id, Long userId);
+    
+    // Deletes the user's notification and returns whether it had been read, empty if there was none
+    @Query(value = "DELETE FROM notifications WHERE id = :id AND user_id = :userId RETURNING is_read", nativeQuery = true)
+    List<Boolean> deleteForUser(@Param("id") Long id, @Param("userId") Long userId);
     
     List<Notification> findByNotificationTypeAndRelatedProjectId(String notificationType, Long relatedProjectId);
     
@@ -52,7 +67,101 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
                                                @Param("notificationType") String notificationType,
                                                Pageable pageable);
     
-    void deleteByUserId(Long userId);
+    // Keyset page for cursor pagination, the cursor is skipped when afterId is null
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId AND " +
+           "(:isRead IS NULL OR n.isRead = :isRead) AND " +
+           "(:notificationType IS NULL OR n.notificationType = :notificationType) AND " +
+           "(:afterId IS NULL OR n.createdAt < :afterCreatedAt OR (n.createdAt = :afterCreatedAt AND n.id < :afterId)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findByUserIdWithFiltersAfter(@Param("userId") Long userId,
+                                                    @Param("isRead") Boolean isRead,
+                                                    @Param("notificationType") String notificationType,
+                                                    @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                    @Param("afterId") Long afterId,
+                                                    Limit limit);
+    
+    @Query("SELECT n.createdAt FROM Notification n WHERE n.id = :id AND n.user.id = :userId")
+    Optional<LocalDateTime> findCreatedAtByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+    
+    // Notifications replayed to a resuming stream client, oldest first, with what the response DTO reads
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.relatedProject LEFT JOIN FETCH n.relatedUser " +
+           "WHERE n.user.id = :userId AND n.createdAt >= :since ORDER BY n.createdAt ASC, n.id ASC")
+    List<Notification> findByUserIdCreatedSince(@Param("userId") Long userId,
+                                                @Param("since") LocalDateTime since,
+                                                Limit limit);
+    
+    // Merges a notification into the latest unread one of the user with the same type and project created
+    // since the given instant, in one statement, so a concurrent read or merge is not overwritten; returns
+    // the id of the merged notification, if any
+    @Query(value = "UPDATE notifications n SET occurrence_count = n.occurrence_count + 1, title = :title, message = :message, " +
+           "related_user_id = CAST(:relatedUserId AS bigint), last_occurred_at = CAST(:occurredAt AS timestamp) " +
+           "WHERE (n.id, n.created_at) = (SELECT c.id, c.created_at FROM notifications c WHERE c.user_id = :userId " +
+           "  AND c.notification_type = :notificationType AND c.is_read = false AND c.created_at >= CAST(:since AS timestamp) " +
+           "  AND (c.related_project_id = CAST(:projectId AS bigint) OR (CAST(:projectId AS bigint) IS NULL AND c.related_project_id IS NULL)) " +
+           "  ORDER BY c.created_at DESC LIMIT 1) " +
+           "AND n.is_read = false " +
+           "RETURNING n.id", nativeQuery = true)
+    List<Long> coalesce(@Param("userId") Long userId,
+                        @Param("notificationType") String notificationType,
+                        @Param("projectId") Long projectId,
+                        @Param("title") String title,
+                        @Param("message") String message,
+                        @Param("relatedUserId") Long relatedUserId,
+                        @Param("occurredAt") LocalDateTime occurredAt,
+                        @Param("since") LocalDateTime since);
+    
+    // Merges a project update into the coalescable notifications of the active members, except the actor and
+    // digest recipients; returns the ids of the merged notifications
+    @Query(value = "UPDATE notifications n SET occurrence_count = n.occurrence_count + 1, title = :title, message = :message, " +
+           "related_user_id = CAST(:actorUserId AS bigint), last_occurred_at = CAST(:createdAt AS timestamp) " +
+           "FROM project_members pm JOIN users u ON u.id = pm.user_id " +
+           "WHERE pm.project_id = :projectId AND pm.is_active = true AND u.notification_digest = false " +
+           "AND (CAST(:actorUserId AS bigint) IS NULL OR pm.user_id <> :actorUserId) " +
+           "AND n.user_id = pm.user_id AND n.related_project_id = pm.project_id AND n.notification_type = :notificationType " +
+           "AND n.is_read = false AND n.created_at >= CAST(:since AS timestamp) " +
+           "RETURNING n.id", nativeQuery = true)
+    List<Long> coalesceForProjectMembers(@Param("projectId") Long projectId,
+                                         @Param("actorUserId") Long actorUserId,
+                                         @Param("title") String title,
+                                         @Param("message") String message,
+                                         @Param("notificationType") String notificationType,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("since") LocalDateTime since);
+    
+    // Notifies the active members of a project, except the actor, digest recipients and members with a
+    // coalescable notification created since the given instant, if any, with one statement; returns the new ids.
+    // created_at is the insert time, which stream resumption relies on; the update's own time goes to last_occurred_at
+    @Query(value = "INSERT INTO notifications (user_id, title, message, notification_type, related_project_id, " +
+           "related_user_id, is_read, created_at, last_occurred_at) " +
+           "SELECT DISTINCT pm.user_id, :title, :message, :notificationType, pm.project_id, CAST(:actorUserId AS bigint), false, " +
+           "CAST(:createdAt AS timestamp), CAST(:occurredAt AS timestamp) " +
+           "FROM project_members pm JOIN users u ON u.id = pm.user_id " +
+           "WHERE pm.project_id = :projectId AND pm.is_active = true AND u.notification_digest = false " +
+           "AND (CAST(:actorUserId AS bigint) IS NULL OR pm.user_id <> :actorUserId) " +
+           "AND (CAST(:since AS timestamp) IS NULL OR NOT EXISTS (SELECT 1 FROM notifications n WHERE n.user_id = pm.user_id AND n.related_project_id = pm.project_id " +
+           "  AND n.notification_type = :notificationType AND n.is_read = false AND n.created_at >= CAST(:since AS timestamp))) " +
+           "RETURNING id", nativeQuery = true)
+    List<Long> insertForProjectMembers(@Param("projectId") Long projectId,
+                                       @Param("actorUserId") Long actorUserId,
+                                       @Param("title") String title,
+                                       @Param("message") String message,
+                                       @Param("notificationType") String notificationType,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("occurredAt") LocalDateTime occurredAt,
+                                       @Param("since") LocalDateTime since);
+    
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.relatedProject LEFT JOIN FETCH n.relatedUser WHERE n.id IN :ids")
+    List<Notification> findByIdInWithRelations(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.relatedProject.id = :projectId")
+    int deleteByRelatedProjectId(@Param("projectId") Long projectId);
     
-    void deleteByRelatedProjectId(Long projectId);
+    // Serializes partition maintenance across instances until the transaction ends
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    int lockForPartitionMaintenance(@Param("key") long key);
 }
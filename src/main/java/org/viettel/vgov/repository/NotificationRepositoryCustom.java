@@ -0,0 +1,33 @@
+package org.viettel.vgov.repository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+public interface NotificationRepositoryCustom {
+    
+    /**
+     * Months that have their own partition of the notifications table, in ascending order.
+     */
+    List<YearMonth> findPartitionMonths();
+    
+    /**
+     * Creates the partition for a month, moving in the rows of that month from the default partition.
+     */
+    void createPartition(YearMonth month);
+    
+    /**
+     * Drops the partition of a month, or with archive detaches it and leaves it as a standalone table
+     * without foreign keys, so the users and projects it mentions can still be deleted.
+     */
+    void removePartition(YearMonth month, boolean archive);
+    
+    /**
+     * Deletes the rows of the default partition created before the given month.
+     */
+    int deleteFromDefaultPartitionBefore(YearMonth month);
+    
+    /**
+     * Sends a message on a Postgres notification channel; listeners receive it once the transaction commits.
+     */
+    void notifyChannel(String channel, String payload);
+}
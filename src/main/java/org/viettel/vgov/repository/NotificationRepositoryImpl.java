@@ -0,0 +1,89 @@
+package org.viettel.vgov.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class NotificationRepositoryImpl implements NotificationRepositoryCustom {
+    
+    private static final Pattern PARTITION_NAME = Pattern.compile("notifications_(\\d{4})_(\\d{2})");
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<YearMonth> findPartitionMonths() {
+        List<String> names = entityManager.createNativeQuery(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'notifications'::regclass").getResultList();
+        return names.stream()
+                .map(PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                .sorted()
+                .toList();
+    }
+    
+    @Override
+    public void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        String from = bound(month);
+        String to = bound(month.plusMonths(1));
+        // Attaching checks that the default partition holds no rows of the month, so they are moved first
+        entityManager.createNativeQuery("CREATE TABLE " + name + " (LIKE notifications INCLUDING DEFAULTS INCLUDING CONSTRAINTS)")
+                .executeUpdate();
+        entityManager.createNativeQuery("WITH moved AS (DELETE FROM notifications_default " +
+                "WHERE created_at >= " + from + " AND created_at < " + to + " RETURNING *) " +
+                "INSERT INTO " + name + " SELECT * FROM moved").executeUpdate();
+        entityManager.createNativeQuery("ALTER TABLE notifications ATTACH PARTITION " + name +
+                " FOR VALUES FROM (" + from + ") TO (" + to + ")").executeUpdate();
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void removePartition(YearMonth month, boolean archive) {
+        String name = partitionName(month);
+        if (!archive) {
+            entityManager.createNativeQuery("DROP TABLE " + name).executeUpdate();
+            return;
+        }
+        entityManager.createNativeQuery("ALTER TABLE notifications DETACH PARTITION " + name).executeUpdate();
+        // The detached table keeps the foreign keys to users and projects, which would block deleting them
+        List<String> foreignKeys = entityManager.createNativeQuery(
+                "SELECT conname FROM pg_constraint WHERE conrelid = CAST(:table AS regclass) AND contype = 'f'")
+                .setParameter("table", name)
+                .getResultList();
+        for (String foreignKey : foreignKeys) {
+            entityManager.createNativeQuery("ALTER TABLE " + name + " DROP CONSTRAINT \"" + foreignKey.replace("\"", "\"\"") + "\"")
+                    .executeUpdate();
+        }
+    }
+    
+    @Override
+    public int deleteFromDefaultPartitionBefore(YearMonth month) {
+        return entityManager.createNativeQuery("DELETE FROM notifications_default WHERE created_at < " + bound(month))
+                .executeUpdate();
+    }
+    
+    @Override
+    public void notifyChannel(String channel, String payload) {
+        entityManager.createNativeQuery("SELECT 1 FROM pg_notify(:channel, :payload)")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload)
+                .getSingleResult();
+    }
+    
+    private static String partitionName(YearMonth month) {
+        return String.format("notifications_%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+    
+    // Built from a YearMonth only, so safe to inline into DDL, which takes no bind parameters
+    private static String bound(YearMonth month) {
+        return "TIMESTAMP '" + month.atDay(1) + " 00:00:00'";
+    }
+}
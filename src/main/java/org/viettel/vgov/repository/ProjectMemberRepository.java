@@ -5,8 +5,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.viettel.vgov.model.ProjectMember;
+import org.viettel.vgov.model.User;
 
+import java.time.LocalDate;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,14 +27,28 @@ public interface ProjectMemberRepository extends JpaRepository<ProjectMember, Lo
     
     List<ProjectMember> findByUserIdAndIsActiveTrue(Long userId);
     
+    // Returns [projectId, projectStatus] for every active membership of the user
+    @Query("SELECT pm.project.id, pm.project.status FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true")
+    List<Object[]> findActiveProjectIdsAndStatusByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT DISTINCT pm.user.id FROM ProjectMember pm WHERE pm.project.pmEmail = :pmEmail AND pm.isActive = true AND pm.project.status != 'Closed'")
+    List<Long> findActiveUserIdsByPmEmail(@Param("pmEmail") String pmEmail);
+    
+    // Returns [userId, totalWorkload, activeProjectCount] over active memberships of projects that are not closed
+    @Query("SELECT pm.user.id, SUM(pm.workloadPercentage), COUNT(pm) FROM ProjectMember pm WHERE pm.isActive = true AND pm.project.status != 'Closed' GROUP BY pm.user.id")
+    List<Object[]> sumActiveWorkloadsByUser();
+    
     Optional<ProjectMember> findByProjectIdAndUserId(Long projectId, Long userId);
     
     @Query("SELECT pm FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed'")
     List<ProjectMember> findActiveProjectMembersByUserId(@Param("userId") Long userId);
     
-    @Query("SELECT SUM(pm.workloadPercentage) FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed'")
+    @Query("SELECT COALESCE(SUM(pm.workloadPercentage), 0) FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed'")
     BigDecimal getTotalWorkloadByUserId(@Param("userId") Long userId);
     
+    @Query("SELECT COALESCE(SUM(pm.workloadPercentage), 0) FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed' AND pm.id != :excludeId")
+    BigDecimal getTotalWorkloadByUserIdExcluding(@Param("userId") Long userId, @Param("excludeId") Long excludeId);
+    
     @Query("SELECT pm FROM ProjectMember pm JOIN FETCH pm.user JOIN FETCH pm.project WHERE pm.project.id = :projectId AND pm.isActive = true")
     List<ProjectMember> findActiveProjectMembersWithDetailsByProjectId(@Param("projectId") Long projectId);
     
@@ -46,16 +63,33 @@ public interface ProjectMemberRepository extends JpaRepository<ProjectMember, Lo
     
     boolean existsByProjectIdAndUserIdAndIsActiveTrue(Long projectId, Long userId);
     
+    // Returns [projectId, userId] pairs of active assignments to non-closed projects
+    @Query("SELECT pm.project.id, pm.user.id FROM ProjectMember pm WHERE pm.user.id IN :userIds AND pm.project.id IN :projectIds AND pm.isActive = true AND pm.project.status != 'Closed'")
+    List<Object[]> findActiveAssignments(@Param("userIds") Collection<Long> userIds, @Param("projectIds") Collection<Long> projectIds);
+    
+    // Current and former members alike
+    @Query("SELECT DISTINCT pm.user.id FROM ProjectMember pm WHERE pm.project.id IN :projectIds")
+    List<Long> findUserIdsByProjectIdIn(@Param("projectIds") Collection<Long> projectIds);
+    
+    @Query("SELECT DISTINCT pm.project.id FROM ProjectMember pm WHERE pm.user.id IN :userIds")
+    List<Long> findProjectIdsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+    
+    // Returns [userId, workloadPercentage, joinedDate, leftDate, projectEndDate] for active memberships of projects
+    // that are not closed and have not ended before :from, of active users (optionally of one role), ordered by user
+    @Query("SELECT pm.user.id, pm.workloadPercentage, pm.joinedDate, pm.leftDate, pm.project.endDate FROM ProjectMember pm " +
+           "WHERE pm.isActive = true AND pm.project.status != 'Closed' AND pm.user.isActive = true AND " +
+           "(pm.leftDate IS NULL OR pm.leftDate > :from) AND (pm.project.endDate IS NULL OR pm.project.endDate >= :from) AND " +
+           "(:role IS NULL OR pm.user.role = :role) " +
+           "ORDER BY pm.user.id")
+    List<Object[]> findUpcomingAllocations(@Param("from") LocalDate from, @Param("role") User.Role role);
+    
+    @Query("SELECT MIN(pm.joinedDate) FROM ProjectMember pm WHERE pm.project.id = :projectId")
+    LocalDate findEarliestJoinedDateByProjectId(@Param("projectId") Long projectId);
+    
     // Additional methods for ProjectMemberService
     List<ProjectMember> findByProjectIdAndIsActive(Long projectId, Boolean isActive);
     
     boolean existsByProjectIdAndUserIdAndIsActive(Long projectId, Long userId, Boolean isActive);
     
     Optional<ProjectMember> findByProjectIdAndUserIdAndIsActive(Long projectId, Long userId, Boolean isActive);
-    
-    @Query("SELECT SUM(pm.workloadPercentage) FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed' AND pm.id != :excludeId")
-    BigDecimal getTotalWorkloadByUserIdExcluding(@Param("userId") Long userId, @Param("excludeId") Long excludeId);
-    
-    @Query("SELECT COUNT(pm.project) FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true AND pm.project.status != 'Closed'")
-    Integer countActiveProjectsByUserId(@Param("userId") Long userId);
 }
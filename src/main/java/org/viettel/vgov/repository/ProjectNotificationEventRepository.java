@@ -0,0 +1,25 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.viettel.vgov.model.ProjectNotificationEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProjectNotificationEventRepository extends JpaRepository<ProjectNotificationEvent, Long> {
+    
+    // Locks the claimed entries until the transaction ends; entries claimed by other dispatchers are skipped
+    @Query(value = "SELECT * FROM project_notification_outbox WHERE next_attempt_at <= :now " +
+           "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ProjectNotificationEvent> claimDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE ProjectNotificationEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, " +
+           "e.lastError = :error WHERE e.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+}
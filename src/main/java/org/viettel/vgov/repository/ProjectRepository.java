@@ -1,13 +1,18 @@
 package org.viettel.vgov.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.viettel.vgov.model.Project;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +27,25 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     
     Page<Project> findByPmEmail(String pmEmail, Pageable pageable);
     
+    @Query("SELECT p.id FROM Project p WHERE p.pmEmail = :pmEmail")
+    List<Long> findIdsByPmEmail(@Param("pmEmail") String pmEmail);
+    
+    @Query("SELECT DISTINCT p.pmEmail FROM Project p WHERE p.id IN :ids")
+    List<String> findPmEmailsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Status x type count matrices, returned as [status, projectType, count]
+    @Query("SELECT p.status, p.projectType, COUNT(p) FROM Project p GROUP BY p.status, p.projectType")
+    List<Object[]> countByStatusAndType();
+    
+    @Query("SELECT p.status, p.projectType, COUNT(p) FROM Project p WHERE p.pmEmail = :pmEmail GROUP BY p.status, p.projectType")
+    List<Object[]> countByStatusAndTypeForPm(@Param("pmEmail") String pmEmail);
+    
+    // Same scope as findProjectsByUserId
+    @Query("SELECT p.status, p.projectType, COUNT(p) FROM Project p WHERE p.status != 'Closed' AND p.id IN " +
+           "(SELECT pm.project.id FROM ProjectMember pm WHERE pm.user.id = :userId AND pm.isActive = true) " +
+           "GROUP BY p.status, p.projectType")
+    List<Object[]> countByStatusAndTypeForMember(@Param("userId") Long userId);
+    
     List<Project> findByStatus(Project.Status status);
     
     List<Project> findByProjectType(Project.ProjectType projectType);
@@ -47,12 +71,13 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     @Query("SELECT p FROM Project p WHERE p.pmEmail = :pmEmail ORDER BY p.createdAt DESC")
     List<Project> findProjectsManagedByPm(@Param("pmEmail") String pmEmail);
     
+    // Filters match case- and diacritic-insensitively through search_normalize, backed by trigram indexes
     // Filter methods for admin (all projects)
     @Query("SELECT p FROM Project p WHERE " +
            "(:search IS NULL OR :search = '' OR " +
-           " p.projectName LIKE CONCAT('%', :search, '%') OR " +
-           " p.projectCode LIKE CONCAT('%', :search, '%') OR " +
-           " p.description LIKE CONCAT('%', :search, '%')) AND " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
            "(:status IS NULL OR p.status = :status) AND " +
            "(:projectType IS NULL OR p.projectType = :projectType)")
     Page<Project> findProjectsWithFilters(@Param("search") String search,
@@ -64,9 +89,9 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     @Query("SELECT p FROM Project p WHERE " +
            "p.pmEmail = :pmEmail AND " +
            "(:search IS NULL OR :search = '' OR " +
-           " p.projectName LIKE CONCAT('%', :search, '%') OR " +
-           " p.projectCode LIKE CONCAT('%', :search, '%') OR " +
-           " p.description LIKE CONCAT('%', :search, '%')) AND " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
            "(:status IS NULL OR p.status = :status) AND " +
            "(:projectType IS NULL OR p.projectType = :projectType)")
     Page<Project> findProjectsWithFiltersForPM(@Param("pmEmail") String pmEmail,
@@ -79,9 +104,9 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     @Query("SELECT DISTINCT p FROM Project p JOIN p.projectMembers pm WHERE " +
            "pm.user.id = :userId AND pm.isActive = true AND p.status != 'Closed' AND " +
            "(:search IS NULL OR :search = '' OR " +
-           " p.projectName LIKE CONCAT('%', :search, '%') OR " +
-           " p.projectCode LIKE CONCAT('%', :search, '%') OR " +
-           " p.description LIKE CONCAT('%', :search, '%')) AND " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
            "(:status IS NULL OR p.status = :status) AND " +
            "(:projectType IS NULL OR p.projectType = :projectType)")
     Page<Project> findProjectsWithFiltersForUser(@Param("userId") Long userId,
@@ -89,4 +114,96 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
                                                  @Param("status") Project.Status status,
                                                  @Param("projectType") Project.ProjectType projectType,
                                                  Pageable pageable);
+    
+    // Keyset variants for cursor pagination (newest first), the cursor is skipped when afterId is null
+    @Query("SELECT p FROM Project p WHERE " +
+           "(:search IS NULL OR :search = '' OR " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
+           "(:status IS NULL OR p.status = :status) AND " +
+           "(:projectType IS NULL OR p.projectType = :projectType) AND " +
+           "(:afterId IS NULL OR p.createdAt < :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.id < :afterId)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Project> findProjectsWithFiltersAfter(@Param("search") String search,
+                                               @Param("status") Project.Status status,
+                                               @Param("projectType") Project.ProjectType projectType,
+                                               @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                               @Param("afterId") Long afterId,
+                                               Limit limit);
+    
+    @Query("SELECT p FROM Project p WHERE " +
+           "p.pmEmail = :pmEmail AND " +
+           "(:search IS NULL OR :search = '' OR " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
+           "(:status IS NULL OR p.status = :status) AND " +
+           "(:projectType IS NULL OR p.projectType = :projectType) AND " +
+           "(:afterId IS NULL OR p.createdAt < :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.id < :afterId)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Project> findProjectsWithFiltersForPMAfter(@Param("pmEmail") String pmEmail,
+                                                    @Param("search") String search,
+                                                    @Param("status") Project.Status status,
+                                                    @Param("projectType") Project.ProjectType projectType,
+                                                    @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                    @Param("afterId") Long afterId,
+                                                    Limit limit);
+    
+    @Query("SELECT DISTINCT p FROM Project p JOIN p.projectMembers pm WHERE " +
+           "pm.user.id = :userId AND pm.isActive = true AND p.status != 'Closed' AND " +
+           "(:search IS NULL OR :search = '' OR " +
+           " search_normalize(p.projectName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.projectCode) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(p.description) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
+           "(:status IS NULL OR p.status = :status) AND " +
+           "(:projectType IS NULL OR p.projectType = :projectType) AND " +
+           "(:afterId IS NULL OR p.createdAt < :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.id < :afterId)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Project> findProjectsWithFiltersForUserAfter(@Param("userId") Long userId,
+                                                      @Param("search") String search,
+                                                      @Param("status") Project.Status status,
+                                                      @Param("projectType") Project.ProjectType projectType,
+                                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                      @Param("afterId") Long afterId,
+                                                      Limit limit);
+    
+    /**
+     * Typeahead over project name and code: rows are [id, projectCode, projectName, score] ordered by
+     * trigram word similarity. Scope is optional: pmEmail limits to managed projects, memberId to
+     * active assignments on non-closed projects.
+     */
+    @Query(value = "SELECT p.id, p.project_code, p.project_name, " +
+           "GREATEST(word_similarity(search_normalize(:q), search_normalize(p.project_name)), " +
+           "         word_similarity(search_normalize(:q), search_normalize(p.project_code))) AS score " +
+           "FROM projects p WHERE " +
+           "(search_normalize(:q) <% search_normalize(p.project_name) OR " +
+           " search_normalize(:q) <% search_normalize(p.project_code) OR " +
+           " search_normalize(p.project_name) LIKE '%' || search_normalize(:q) || '%' OR " +
+           " search_normalize(p.project_code) LIKE '%' || search_normalize(:q) || '%') AND " +
+           "(CAST(:pmEmail AS varchar) IS NULL OR p.pm_email = :pmEmail) AND " +
+           "(CAST(:memberId AS bigint) IS NULL OR (p.status <> 'Closed' AND EXISTS (" +
+           "  SELECT 1 FROM project_members pm WHERE pm.project_id = p.id AND pm.user_id = :memberId AND pm.is_active = true))) " +
+           "ORDER BY score DESC, p.project_name LIMIT :limit", nativeQuery = true)
+    List<Object[]> suggestProjects(@Param("q") String query,
+                                   @Param("pmEmail") String pmEmail,
+                                   @Param("memberId") Long memberId,
+                                   @Param("limit") int limit);
+    
+    // Adds hour deltas to logged_hours; the arrays are parallel, one element per project
+    @Modifying
+    @Query(value = "UPDATE projects p SET logged_hours = p.logged_hours + d.hours " +
+           "FROM unnest(CAST(:projectIds AS bigint[]), CAST(:hours AS numeric[])) AS d(project_id, hours) " +
+           "WHERE p.id = d.project_id", nativeQuery = true)
+    int applyLoggedHoursDeltas(@Param("projectIds") Long[] projectIds, @Param("hours") BigDecimal[] hours);
+    
+    @Modifying
+    @Query(value = "UPDATE projects p SET logged_hours = COALESCE(" +
+           "(SELECT SUM(wl.hours_worked) FROM work_logs wl WHERE wl.project_id = p.id), 0)", nativeQuery = true)
+    int rebuildLoggedHoursFromWorkLogs();
+    
+    // Projects whose logged_hours differs from the sum of their work logs
+    @Query(value = "SELECT COUNT(*) FROM projects p WHERE p.logged_hours <> COALESCE(" +
+           "(SELECT SUM(wl.hours_worked) FROM work_logs wl WHERE wl.project_id = p.id), 0)", nativeQuery = true)
+    long countLoggedHoursMismatches();
 }
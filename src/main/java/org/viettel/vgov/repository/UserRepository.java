@@ -3,11 +3,14 @@ package org.viettel.vgov.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.viettel.vgov.model.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,27 +34,109 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.isActive = true AND u.role = :role")
     List<User> findActiveUsersByRole(@Param("role") User.Role role);
     
+    List<User> findByIsActiveTrueOrderByIdAsc();
+    
+    List<User> findByRoleAndIsActiveTrueOrderByIdAsc(User.Role role);
+    
+    @Query("SELECT u.email FROM User u WHERE u.id IN :ids")
+    List<String> findEmailsByIdIn(@Param("ids") Collection<Long> ids);
+    
     @Query("SELECT u FROM User u JOIN FETCH u.createdBy WHERE u.id = :id")
     Optional<User> findByIdWithCreatedBy(@Param("id") Long id);
     
     @Query("SELECT u FROM User u WHERE u.fullName LIKE %:name% AND u.isActive = true")
     List<User> findByFullNameContainingIgnoreCaseAndIsActiveTrue(@Param("name") String name);
     
-    // Count methods for dashboard
-    long countByIsActive(Boolean isActive);
+    // Returns [id, fullName, role] of active non-admin users, optionally of one role, ordered by id
+    @Query("SELECT u.id, u.fullName, u.role FROM User u WHERE u.isActive = true AND u.role != 'admin' AND " +
+           "(:role IS NULL OR u.role = :role) ORDER BY u.id")
+    List<Object[]> findActiveStaff(@Param("role") User.Role role);
     
-    long countByRole(User.Role role);
+    // Returns [role, isActive, count] for every role and active flag combination that has users
+    @Query("SELECT u.role, u.isActive, COUNT(u) FROM User u GROUP BY u.role, u.isActive")
+    List<Object[]> countByRoleAndIsActive();
     
-    // Filter method for user search with pagination
+    // Filter method for user search with pagination, case- and diacritic-insensitive (trigram indexed)
     @Query("SELECT u FROM User u WHERE " +
            "(:search IS NULL OR :search = '' OR " +
-           " u.fullName LIKE CONCAT('%', :search, '%') OR " +
-           " u.email LIKE CONCAT('%', :search, '%') OR " +
-           " u.employeeCode LIKE CONCAT('%', :search, '%')) AND " +
+           " search_normalize(u.fullName) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(u.email) LIKE CONCAT('%', search_normalize(:search), '%') OR " +
+           " search_normalize(u.employeeCode) LIKE CONCAT('%', search_normalize(:search), '%')) AND " +
            "(:roleEnum IS NULL OR u.role = :roleEnum) AND " +
            "(:isActive IS NULL OR u.isActive = :isActive)")
     Page<User> findUsersWithFilters(@Param("search") String search, 
                                    @Param("roleEnum") User.Role roleEnum, 
                                    @Param("isActive") Boolean isActive, 
                                    Pageable pageable);
+    
+    // Typeahead: rows are [id, employeeCode, fullName, email, score] ordered by trigram word similarity
+    @Query(value = "SELECT u.id, u.employee_code, u.full_name, u.email, " +
+           "GREATEST(word_similarity(search_normalize(:q), search_normalize(u.full_name)), " +
+           "         word_similarity(search_normalize(:q), search_normalize(u.email)), " +
+           "         word_similarity(search_normalize(:q), search_normalize(u.employee_code))) AS score " +
+           "FROM users u WHERE " +
+           "search_normalize(:q) <% search_normalize(u.full_name) OR " +
+           "search_normalize(:q) <% search_normalize(u.email) OR " +
+           "search_normalize(:q) <% search_normalize(u.employee_code) OR " +
+           "search_normalize(u.full_name) LIKE '%' || search_normalize(:q) || '%' OR " +
+           "search_normalize(u.email) LIKE '%' || search_normalize(:q) || '%' OR " +
+           "search_normalize(u.employee_code) LIKE '%' || search_normalize(:q) || '%' " +
+           "ORDER BY score DESC, u.full_name LIMIT :limit", nativeQuery = true)
+    List<Object[]> suggestUsers(@Param("q") String query, @Param("limit") int limit);
+    
+    // Serializes workload changes of a user until the transaction ends
+    @Query(value = "SELECT id FROM users WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+    
+    @Query("SELECT u.tokensValidFrom FROM User u WHERE u.id = :id")
+    Optional<LocalDateTime> findTokensValidFromById(@Param("id") Long id);
+    
+    // Only moves the cut-off forward
+    @Modifying
+    @Query("UPDATE User u SET u.tokensValidFrom = :validFrom WHERE u.id = :id AND " +
+           "(u.tokensValidFrom IS NULL OR u.tokensValidFrom < :validFrom)")
+    int updateTokensValidFrom(@Param("id") Long id, @Param("validFrom") LocalDateTime validFrom);
+    
+    @Query("SELECT u.notificationDigest FROM User u WHERE u.id = :id")
+    Optional<Boolean> findNotificationDigestById(@Param("id") Long id);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.notificationDigest = :digest WHERE u.id = :id")
+    int updateNotificationDigest(@Param("id") Long id, @Param("digest") boolean digest);
+    
+    @Query("SELECT u.unreadNotificationCount FROM User u WHERE u.id = :id")
+    Optional<Integer> findUnreadNotificationCountById(@Param("id") Long id);
+    
+    // Adds deltas to unread_notification_count; the arrays are parallel, one element per user
+    @Modifying
+    @Query(value = "UPDATE users u SET unread_notification_count = u.unread_notification_count + d.delta " +
+           "FROM unnest(CAST(:userIds AS bigint[]), CAST(:deltas AS integer[])) AS d(user_id, delta) " +
+           "WHERE u.id = d.user_id", nativeQuery = true)
+    int applyUnreadNotificationDeltas(@Param("userIds") Long[] userIds, @Param("deltas") Integer[] deltas);
+    
+    // Takes the unread notifications of a project that is about to be deleted off their users' counts
+    @Modifying
+    @Query(value = "UPDATE users u SET unread_notification_count = u.unread_notification_count - d.unread " +
+           "FROM (SELECT n.user_id, COUNT(*) AS unread FROM notifications n " +
+           "      WHERE n.related_project_id = :projectId AND n.is_read = false GROUP BY n.user_id) d " +
+           "WHERE u.id = d.user_id", nativeQuery = true)
+    int subtractUnreadNotificationsOfProject(@Param("projectId") Long projectId);
+    
+    // Takes the unread notifications created before a date, which are about to be purged, off their users' counts
+    @Modifying
+    @Query(value = "UPDATE users u SET unread_notification_count = u.unread_notification_count - d.unread " +
+           "FROM (SELECT n.user_id, COUNT(*) AS unread FROM notifications n " +
+           "      WHERE n.created_at < :before AND n.is_read = false GROUP BY n.user_id) d " +
+           "WHERE u.id = d.user_id", nativeQuery = true)
+    int subtractUnreadNotificationsCreatedBefore(@Param("before") LocalDateTime before);
+    
+    // Corrects counts that differ from the notifications by adding the difference, so changes
+    // committed concurrently, which move the count and the notifications together, are kept
+    @Modifying
+    @Query(value = "UPDATE users u SET unread_notification_count = u.unread_notification_count + d.drift " +
+           "FROM (SELECT c.id, COUNT(n.id) - c.unread_notification_count AS drift FROM users c " +
+           "      LEFT JOIN notifications n ON n.user_id = c.id AND n.is_read = false " +
+           "      GROUP BY c.id HAVING COUNT(n.id) <> c.unread_notification_count) d " +
+           "WHERE u.id = d.id", nativeQuery = true)
+    int reconcileUnreadNotificationCounts();
 }
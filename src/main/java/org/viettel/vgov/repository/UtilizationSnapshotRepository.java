@@ -0,0 +1,40 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.viettel.vgov.model.UtilizationSnapshot;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UtilizationSnapshotRepository extends JpaRepository<UtilizationSnapshot, LocalDate> {
+    
+    Optional<UtilizationSnapshot> findFirstByWeekStartLessThanEqualOrderByWeekStartDesc(LocalDate weekStart);
+    
+    @Query("SELECT s.weekStart FROM UtilizationSnapshot s WHERE s.weekStart > :after AND s.weekStart <= :until")
+    List<LocalDate> findWeekStartsBetween(@Param("after") LocalDate after, @Param("until") LocalDate until);
+    
+    // Concurrent replays may persist the same week; the first one wins
+    @Modifying
+    @Query(value = "INSERT INTO utilization_snapshots (week_start, member_ids, user_ids, basis_points, created_at) " +
+           "VALUES (:weekStart, CAST(:memberIds AS bigint[]), CAST(:userIds AS bigint[]), CAST(:basisPoints AS int[]), now()) " +
+           "ON CONFLICT (week_start) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("weekStart") LocalDate weekStart, @Param("memberIds") Long[] memberIds,
+                       @Param("userIds") Long[] userIds, @Param("basisPoints") Integer[] basisPoints);
+    
+    @Modifying
+    @Query("DELETE FROM UtilizationSnapshot s WHERE s.weekStart > :date")
+    int deleteByWeekStartAfter(@Param("date") LocalDate date);
+    
+    // Transaction-scoped advisory locks ordering snapshot writes against invalidation
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock_shared(:key)", nativeQuery = true)
+    int lockForReplay(@Param("key") long key);
+    
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    int lockForInvalidation(@Param("key") long key);
+}
@@ -0,0 +1,78 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.viettel.vgov.model.WorkLogDailyRollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface WorkLogDailyRollupRepository extends JpaRepository<WorkLogDailyRollup, Long> {
+    
+    // Adds the deltas to existing rows (or creates them); the arrays are parallel, one element per key
+    @Modifying
+    @Query(value = "INSERT INTO work_log_daily_rollups (user_id, project_id, work_date, total_hours, entry_count) " +
+           "SELECT * FROM unnest(CAST(:userIds AS bigint[]), CAST(:projectIds AS bigint[]), CAST(:workDates AS date[]), " +
+           "CAST(:hours AS numeric[]), CAST(:counts AS int[])) " +
+           "ON CONFLICT (user_id, project_id, work_date) DO UPDATE SET " +
+           "total_hours = work_log_daily_rollups.total_hours + EXCLUDED.total_hours, " +
+           "entry_count = work_log_daily_rollups.entry_count + EXCLUDED.entry_count", nativeQuery = true)
+    int applyDeltas(@Param("userIds") Long[] userIds, @Param("projectIds") Long[] projectIds, @Param("workDates") LocalDate[] workDates,
+                    @Param("hours") BigDecimal[] hours, @Param("counts") Integer[] counts);
+    
+    @Modifying
+    @Query(value = "DELETE FROM work_log_daily_rollups r " +
+           "USING unnest(CAST(:userIds AS bigint[]), CAST(:projectIds AS bigint[]), CAST(:workDates AS date[])) AS k(user_id, project_id, work_date) " +
+           "WHERE r.user_id = k.user_id AND r.project_id = k.project_id AND r.work_date = k.work_date AND r.entry_count = 0", nativeQuery = true)
+    int deleteEmpty(@Param("userIds") Long[] userIds, @Param("projectIds") Long[] projectIds, @Param("workDates") LocalDate[] workDates);
+    
+    @Modifying
+    @Query(value = "DELETE FROM work_log_daily_rollups", nativeQuery = true)
+    int deleteAllRows();
+    
+    @Modifying
+    @Query(value = "INSERT INTO work_log_daily_rollups (user_id, project_id, work_date, total_hours, entry_count) " +
+           "SELECT user_id, project_id, work_date, SUM(hours_worked), COUNT(*) FROM work_logs " +
+           "GROUP BY user_id, project_id, work_date", nativeQuery = true)
+    int rebuildFromWorkLogs();
+    
+    // Keys whose rollup differs from a fresh aggregation of work_logs (missing, extra or wrong totals)
+    @Query(value = "SELECT COUNT(*) FROM (" +
+           "  SELECT user_id, project_id, work_date, SUM(hours_worked) AS total_hours, COUNT(*) AS entry_count " +
+           "  FROM work_logs GROUP BY user_id, project_id, work_date) a " +
+           "FULL OUTER JOIN work_log_daily_rollups r USING (user_id, project_id, work_date) " +
+           "WHERE a.total_hours IS DISTINCT FROM r.total_hours OR a.entry_count IS DISTINCT FROM r.entry_count", nativeQuery = true)
+    long countMismatches();
+    
+    @Query("SELECT new org.viettel.vgov.dto.response.AnalyticsResponseDto$WorkLogSummaryDto(r.workDate, SUM(r.totalHours), CAST(SUM(r.entryCount) AS int), r.project.id, r.project.projectName) " +
+           "FROM WorkLogDailyRollup r WHERE r.project.id = :projectId " +
+           "GROUP BY r.workDate, r.project.id, r.project.projectName " +
+           "ORDER BY r.workDate DESC")
+    List<org.viettel.vgov.dto.response.AnalyticsResponseDto.WorkLogSummaryDto> findWorkLogSummaryByProject(@Param("projectId") Long projectId);
+    
+    // Returns a row for every day from startDate to endDate, days without work logs included;
+    // the range is widened to cover all of the project's logged days
+    @Query(value = "SELECT CAST(d.day AS date) AS day, COALESCE(h.hours, 0) AS hours, " +
+           "SUM(COALESCE(h.hours, 0)) OVER (ORDER BY d.day) AS cumulative " +
+           "FROM generate_series(" +
+           "  LEAST(CAST(:startDate AS date), (SELECT MIN(r.work_date) FROM work_log_daily_rollups r WHERE r.project_id = :projectId)), " +
+           "  GREATEST(CAST(:endDate AS date), (SELECT MAX(r.work_date) FROM work_log_daily_rollups r WHERE r.project_id = :projectId)), " +
+           "  interval '1 day') AS d(day) " +
+           "LEFT JOIN (SELECT r.work_date, SUM(r.total_hours) AS hours FROM work_log_daily_rollups r " +
+           "  WHERE r.project_id = :projectId GROUP BY r.work_date) h ON h.work_date = d.day " +
+           "ORDER BY d.day", nativeQuery = true)
+    List<BurnUpRow> findDailyBurnUp(@Param("projectId") Long projectId,
+                                   @Param("startDate") LocalDate startDate,
+                                   @Param("endDate") LocalDate endDate);
+    
+    interface BurnUpRow {
+        LocalDate getDay();
+        BigDecimal getHours();
+        BigDecimal getCumulative();
+    }
+}
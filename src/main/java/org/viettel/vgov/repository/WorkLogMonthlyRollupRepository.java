@@ -0,0 +1,67 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.viettel.vgov.model.WorkLogMonthlyRollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WorkLogMonthlyRollupRepository extends JpaRepository<WorkLogMonthlyRollup, Long> {
+    
+    // Adds the deltas to existing rows (or creates them); the arrays are parallel, one element per key
+    @Modifying
+    @Query(value = "INSERT INTO work_log_monthly_rollups (user_id, project_id, month_start, total_hours, entry_count) " +
+           "SELECT * FROM unnest(CAST(:userIds AS bigint[]), CAST(:projectIds AS bigint[]), CAST(:monthStarts AS date[]), " +
+           "CAST(:hours AS numeric[]), CAST(:counts AS int[])) " +
+           "ON CONFLICT (user_id, project_id, month_start) DO UPDATE SET " +
+           "total_hours = work_log_monthly_rollups.total_hours + EXCLUDED.total_hours, " +
+           "entry_count = work_log_monthly_rollups.entry_count + EXCLUDED.entry_count", nativeQuery = true)
+    int applyDeltas(@Param("userIds") Long[] userIds, @Param("projectIds") Long[] projectIds, @Param("monthStarts") LocalDate[] monthStarts,
+                    @Param("hours") BigDecimal[] hours, @Param("counts") Integer[] counts);
+    
+    @Modifying
+    @Query(value = "DELETE FROM work_log_monthly_rollups r " +
+           "USING unnest(CAST(:userIds AS bigint[]), CAST(:projectIds AS bigint[]), CAST(:monthStarts AS date[])) AS k(user_id, project_id, month_start) " +
+           "WHERE r.user_id = k.user_id AND r.project_id = k.project_id AND r.month_start = k.month_start AND r.entry_count = 0", nativeQuery = true)
+    int deleteEmpty(@Param("userIds") Long[] userIds, @Param("projectIds") Long[] projectIds, @Param("monthStarts") LocalDate[] monthStarts);
+    
+    @Modifying
+    @Query(value = "DELETE FROM work_log_monthly_rollups", nativeQuery = true)
+    int deleteAllRows();
+    
+    @Modifying
+    @Query(value = "INSERT INTO work_log_monthly_rollups (user_id, project_id, month_start, total_hours, entry_count) " +
+           "SELECT user_id, project_id, CAST(date_trunc('month', work_date) AS date), SUM(hours_worked), COUNT(*) FROM work_logs " +
+           "GROUP BY user_id, project_id, CAST(date_trunc('month', work_date) AS date)", nativeQuery = true)
+    int rebuildFromWorkLogs();
+    
+    // Keys whose rollup differs from a fresh aggregation of work_logs (missing, extra or wrong totals)
+    @Query(value = "SELECT COUNT(*) FROM (" +
+           "  SELECT user_id, project_id, CAST(date_trunc('month', work_date) AS date) AS month_start, " +
+           "         SUM(hours_worked) AS total_hours, COUNT(*) AS entry_count " +
+           "  FROM work_logs GROUP BY user_id, project_id, CAST(date_trunc('month', work_date) AS date)) a " +
+           "FULL OUTER JOIN work_log_monthly_rollups r USING (user_id, project_id, month_start) " +
+           "WHERE a.total_hours IS DISTINCT FROM r.total_hours OR a.entry_count IS DISTINCT FROM r.entry_count", nativeQuery = true)
+    long countMismatches();
+    
+    // Returns [monthStart, totalHours] for the given months; userId / pmEmail optionally narrow the scope
+    @Query("SELECT r.monthStart, SUM(r.totalHours) FROM WorkLogMonthlyRollup r WHERE r.monthStart IN :monthStarts AND " +
+           "(:userId IS NULL OR r.user.id = :userId) AND (:pmEmail IS NULL OR r.project.pmEmail = :pmEmail) " +
+           "GROUP BY r.monthStart")
+    List<Object[]> sumHoursByMonth(@Param("monthStarts") Collection<LocalDate> monthStarts,
+                                   @Param("userId") Long userId,
+                                   @Param("pmEmail") String pmEmail);
+    
+    // Returns [projectName, totalHours, entryCount] per project; userId / pmEmail optionally narrow the scope
+    @Query("SELECT r.project.projectName, SUM(r.totalHours), SUM(r.entryCount) FROM WorkLogMonthlyRollup r WHERE " +
+           "(:userId IS NULL OR r.user.id = :userId) AND (:pmEmail IS NULL OR r.project.pmEmail = :pmEmail) " +
+           "GROUP BY r.project.id, r.project.projectName")
+    List<Object[]> sumByProject(@Param("userId") Long userId, @Param("pmEmail") String pmEmail);
+}
@@ -1,6 +1,13 @@
 package org.viettel.vgov.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -8,13 +15,17 @@ import org.viettel.vgov.model.WorkLog;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface WorkLogRepository extends JpaRepository<WorkLog, Long> {
+public interface WorkLogRepository extends JpaRepository<WorkLog, Long>, JpaSpecificationExecutor<WorkLog>,
+        WorkLogRepositoryCustom {
     
-    List<WorkLog> findByUserId(Long userId);
+    @Override
+    @EntityGraph(attributePaths = {"user", "project"})
+    Page<WorkLog> findAll(Specification<WorkLog> spec, Pageable pageable);
     
     List<WorkLog> findByProjectId(Long projectId);
     
@@ -22,33 +33,80 @@ public interface WorkLogRepository extends JpaRepository<WorkLog, Long> {
     
     Optional<WorkLog> findByUserIdAndProjectIdAndWorkDate(Long userId, Long projectId, LocalDate workDate);
     
+    /**
+     * Inserts or updates one user's cells in a single statement, relying on the
+     * (user_id, project_id, work_date) unique constraint instead of a prior existence check.
+     * The arrays are parallel: element i describes one cell. Null task/description keep the stored value.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO work_logs (id, user_id, project_id, work_date, hours_worked, task_feature, work_description, created_at, updated_at) " +
+           "SELECT nextval('work_logs_seq'), :userId, c.project_id, c.work_date, c.hours_worked, c.task_feature, c.work_description, LOCALTIMESTAMP, LOCALTIMESTAMP " +
+           "FROM unnest(CAST(:projectIds AS bigint[]), CAST(:workDates AS date[]), CAST(:hours AS numeric[]), CAST(:taskFeatures AS varchar[]), CAST(:workDescriptions AS text[])) " +
+           "AS c(project_id, work_date, hours_worked, task_feature, work_description) " +
+           "ON CONFLICT (user_id, project_id, work_date) DO UPDATE SET " +
+           "hours_worked = EXCLUDED.hours_worked, " +
+           "task_feature = COALESCE(EXCLUDED.task_feature, work_logs.task_feature), " +
+           "work_description = COALESCE(EXCLUDED.work_description, work_logs.work_description), " +
+           "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int upsertCells(@Param("userId") Long userId, @Param("projectIds") Long[] projectIds, @Param("workDates") LocalDate[] workDates,
+                    @Param("hours") BigDecimal[] hours, @Param("taskFeatures") String[] taskFeatures,
+                    @Param("workDescriptions") String[] workDescriptions);
+    
+    @Modifying
+    @Query(value = "DELETE FROM work_logs w USING unnest(CAST(:projectIds AS bigint[]), CAST(:workDates AS date[])) AS c(project_id, work_date) " +
+           "WHERE w.user_id = :userId AND w.project_id = c.project_id AND w.work_date = c.work_date", nativeQuery = true)
+    int deleteCells(@Param("userId") Long userId, @Param("projectIds") Long[] projectIds, @Param("workDates") LocalDate[] workDates);
+    
+    @Query("SELECT w.user.id FROM WorkLog w WHERE w.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+    
+    // Serializes the work log writes of a user until the end of the transaction, so that rollup deltas
+    // computed from the cells read stay exact; 1464618823 ("WLOG") is the lock namespace, and the bigint
+    // user id is hashed into the second 32-bit key (a collision only serializes two users' writes)
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(1464618823, hashint8(CAST(:userId AS bigint)))", nativeQuery = true)
+    int lockUserWorkLogs(@Param("userId") Long userId);
+    
+    // Blocks concurrent work log writes until the end of the transaction (used while rebuilding rollups)
+    @Modifying
+    @Query(value = "LOCK TABLE work_logs IN SHARE MODE", nativeQuery = true)
+    void lockAgainstWrites();
+    
+    // Returns [userId, projectId, workDate, hoursWorked] rows for the given users within the date range
+    @Query("SELECT wl.user.id, wl.project.id, wl.workDate, wl.hoursWorked FROM WorkLog wl WHERE wl.user.id IN :userIds AND wl.workDate BETWEEN :startDate AND :endDate")
+    List<Object[]> findHoursByUserIdsAndDateRange(@Param("userIds") Collection<Long> userIds, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    
     @Query("SELECT wl FROM WorkLog wl WHERE wl.user.id = :userId AND wl.workDate BETWEEN :startDate AND :endDate ORDER BY wl.workDate DESC")
     List<WorkLog> findByUserIdAndDateRange(@Param("userId") Long userId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
+    @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user JOIN FETCH wl.project WHERE wl.user.id = :userId AND wl.workDate BETWEEN :startDate AND :endDate ORDER BY wl.project.id, wl.workDate")
+    List<WorkLog> findByUserIdAndDateRangeWithDetails(@Param("userId") Long userId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    
     @Query("SELECT wl FROM WorkLog wl WHERE wl.project.id = :projectId AND wl.workDate BETWEEN :startDate AND :endDate ORDER BY wl.workDate DESC")
     List<WorkLog> findByProjectIdAndDateRange(@Param("projectId") Long projectId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
     @Query("SELECT SUM(wl.hoursWorked) FROM WorkLog wl WHERE wl.user.id = :userId AND wl.workDate BETWEEN :startDate AND :endDate")
     BigDecimal getTotalHoursByUserAndDateRange(@Param("userId") Long userId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
+    // Hours the user logged on the day in every other work log, for the daily cap when one of them is edited
+    @Query("SELECT COALESCE(SUM(wl.hoursWorked), 0) FROM WorkLog wl WHERE wl.user.id = :userId AND wl.workDate = :workDate AND wl.id <> :excludedId")
+    BigDecimal getTotalHoursByUserAndDateExcluding(@Param("userId") Long userId, @Param("workDate") LocalDate workDate, @Param("excludedId") Long excludedId);
+    
     @Query("SELECT SUM(wl.hoursWorked) FROM WorkLog wl WHERE wl.project.id = :projectId AND wl.workDate BETWEEN :startDate AND :endDate")
     BigDecimal getTotalHoursByProjectAndDateRange(@Param("projectId") Long projectId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
-    @Query("SELECT wl FROM WorkLog wl WHERE wl.project.pmEmail = :pmEmail ORDER BY wl.workDate DESC")
-    List<WorkLog> findWorkLogsByPmEmail(@Param("pmEmail") String pmEmail);
+    // Most recently created work logs first, read through the created_at indexes
+    @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user JOIN FETCH wl.project ORDER BY wl.createdAt DESC, wl.id DESC")
+    List<WorkLog> findRecentWithDetails(Limit limit);
+    
+    @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user JOIN FETCH wl.project p WHERE p.pmEmail = :pmEmail ORDER BY wl.createdAt DESC, wl.id DESC")
+    List<WorkLog> findRecentByPmEmailWithDetails(@Param("pmEmail") String pmEmail, Limit limit);
+    
+    @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user u JOIN FETCH wl.project WHERE u.id = :userId ORDER BY wl.createdAt DESC, wl.id DESC")
+    List<WorkLog> findRecentByUserIdWithDetails(@Param("userId") Long userId, Limit limit);
     
     @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user JOIN FETCH wl.project WHERE wl.user.id = :userId ORDER BY wl.workDate DESC")
     List<WorkLog> findByUserIdWithDetails(@Param("userId") Long userId);
     
     @Query("SELECT wl FROM WorkLog wl JOIN FETCH wl.user JOIN FETCH wl.project WHERE wl.project.id = :projectId ORDER BY wl.workDate DESC")
     List<WorkLog> findByProjectIdWithDetails(@Param("projectId") Long projectId);
-    
-    @Query("SELECT COUNT(wl) FROM WorkLog wl WHERE wl.project.id = :projectId")
-    Long countByProjectId(@Param("projectId") Long projectId);
-    
-    @Query("SELECT new org.viettel.vgov.dto.response.AnalyticsResponseDto$WorkLogSummaryDto(wl.workDate, SUM(wl.hoursWorked), CAST(COUNT(wl) AS int), wl.project.id, wl.project.projectName) " +
-           "FROM WorkLog wl WHERE wl.project.id = :projectId " +
-           "GROUP BY wl.workDate, wl.project.id, wl.project.projectName " +
-           "ORDER BY wl.workDate DESC")
-    List<org.viettel.vgov.dto.response.AnalyticsResponseDto.WorkLogSummaryDto> findWorkLogSummaryByProject(@Param("projectId") Long projectId);
 }
@@ -0,0 +1,25 @@
+package org.viettel.vgov.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.viettel.vgov.dto.response.WorkLogResponseDto;
+import org.viettel.vgov.model.WorkLog;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface WorkLogRepositoryCustom {
+    
+    /**
+     * Streams matching work logs as response rows through a forward-only JDBC cursor.
+     * Rows are projected directly from the result set, so no entities accumulate in the
+     * persistence context. Must be consumed inside a transaction and closed by the caller.
+     */
+    Stream<WorkLogResponseDto> streamAll(Specification<WorkLog> specification, Sort sort, int fetchSize);
+    
+    /**
+     * Persists new work logs using JDBC batches of the given size, flushing and clearing the
+     * persistence context after each batch so memory stays flat for large imports.
+     */
+    void insertAll(List<WorkLog> workLogs, int batchSize);
+}
@@ -0,0 +1,103 @@
+package org.viettel.vgov.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.viettel.vgov.dto.response.WorkLogResponseDto;
+import org.viettel.vgov.model.Project;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.model.WorkLog;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+class WorkLogRepositoryImpl implements WorkLogRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Stream<WorkLogResponseDto> streamAll(Specification<WorkLog> specification, Sort sort, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<WorkLog> root = query.from(WorkLog.class);
+        Join<WorkLog, User> user = root.join("user");
+        Join<WorkLog, Project> project = root.join("project");
+        
+        query.multiselect(
+                root.get("id"),
+                user.get("id"),
+                user.get("fullName"),
+                project.get("id"),
+                project.get("projectName"),
+                root.get("workDate"),
+                root.get("hoursWorked"),
+                root.get("taskFeature"),
+                root.get("workDescription"),
+                root.get("createdAt"),
+                root.get("updatedAt"));
+        
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .map(this::toResponseDto);
+    }
+    
+    @Override
+    public void insertAll(List<WorkLog> workLogs, int batchSize) {
+        Session session = entityManager.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            for (int i = 0; i < workLogs.size(); i++) {
+                entityManager.persist(workLogs.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+    
+    private WorkLogResponseDto toResponseDto(Tuple tuple) {
+        WorkLogResponseDto dto = new WorkLogResponseDto();
+        dto.setId(tuple.get(0, Long.class));
+        dto.setUserId(tuple.get(1, Long.class));
+        dto.setUserFullName(tuple.get(2, String.class));
+        dto.setProjectId(tuple.get(3, Long.class));
+        dto.setProjectName(tuple.get(4, String.class));
+        dto.setWorkDate(tuple.get(5, LocalDate.class));
+        dto.setHoursWorked(tuple.get(6, BigDecimal.class));
+        dto.setTaskFeature(tuple.get(7, String.class));
+        dto.setWorkDescription(tuple.get(8, String.class));
+        dto.setCreatedAt(tuple.get(9, LocalDateTime.class));
+        dto.setUpdatedAt(tuple.get(10, LocalDateTime.class));
+        return dto;
+    }
+}
@@ -0,0 +1,123 @@
+package org.viettel.vgov.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.model.WorkLog;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public final class WorkLogSpecifications {
+
+    private WorkLogSpecifications() {
+    }
+
+    /**
+     * Restricts work logs to what a user with the given role may see:
+     * admin sees everything, PM sees logs of managed projects, employees see their own logs.
+     */
+    public static Specification<WorkLog> visibleTo(User.Role role, Long userId, String email) {
+        switch (role) {
+            case admin:
+                return (root, query, cb) -> cb.conjunction();
+            case pm:
+                return (root, query, cb) -> cb.equal(root.get("project").get("pmEmail"), email);
+            default:
+                return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+        }
+    }
+
+    /**
+     * Full-text match of task feature and description (web search syntax: words, "phrases", -exclusions),
+     * served by the GIN index on the work_log_document expression.
+     */
+    public static Specification<WorkLog> matchesSearch(String search) {
+        return (root, query, cb) -> cb.isTrue(
+                cb.function("fts_match", Boolean.class,
+                        root.get("taskFeature"), root.get("workDescription"), bind(cb, search)));
+    }
+    
+    /**
+     * Orders results by full-text rank, best matches first. Contributes no predicate and is
+     * skipped for count queries.
+     */
+    public static Specification<WorkLog> orderByRelevance(String search) {
+        return (root, query, cb) -> {
+            if (!Long.class.equals(query.getResultType())) {
+                query.orderBy(
+                        cb.desc(cb.function("fts_rank", Double.class,
+                                root.get("taskFeature"), root.get("workDescription"), bind(cb, search))),
+                        cb.desc(root.get("id")));
+            }
+            return null;
+        };
+    }
+
+    public static Specification<WorkLog> hasProjectId(Long projectId) {
+        return (root, query, cb) -> cb.equal(root.get("project").get("id"), projectId);
+    }
+
+    public static Specification<WorkLog> hasUserId(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    public static Specification<WorkLog> workDateFrom(LocalDate fromDate) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("workDate"), fromDate);
+    }
+
+    public static Specification<WorkLog> workDateTo(LocalDate toDate) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("workDate"), toDate);
+    }
+
+    public static Specification<WorkLog> minHours(BigDecimal minHours) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("hoursWorked"), minHours);
+    }
+
+    public static Specification<WorkLog> maxHours(BigDecimal maxHours) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("hoursWorked"), maxHours);
+    }
+
+    public static Specification<WorkLog> taskFeatureContains(String taskFeature) {
+        String pattern = likePattern(taskFeature);
+        return (root, query, cb) -> cb.like(cb.lower(root.get("taskFeature")), pattern);
+    }
+
+    /**
+     * Keyset condition for cursor pagination: rows strictly after (sortValue, id) in the given direction.
+     * The sort property may be a nested path such as {@code project.projectName}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<WorkLog> after(String sortProperty, Sort.Direction direction,
+                                               Comparable sortValue, Long id) {
+        return (root, query, cb) -> {
+            Path<?> path = root;
+            for (String segment : sortProperty.split("\\.")) {
+                path = path.get(segment);
+            }
+            Expression<Comparable> sortPath = (Expression<Comparable>) path;
+            Expression<Long> idPath = root.get("id");
+            if (direction == Sort.Direction.DESC) {
+                return cb.or(
+                        cb.lessThan(sortPath, sortValue),
+                        cb.and(cb.equal(sortPath, sortValue), cb.lessThan(idPath, id)));
+            }
+            return cb.or(
+                    cb.greaterThan(sortPath, sortValue),
+                    cb.and(cb.equal(sortPath, sortValue), cb.greaterThan(idPath, id)));
+        };
+    }
+
+    // Binds the value as a JDBC parameter; function arguments are otherwise rendered as inline literals
+    private static Expression<String> bind(CriteriaBuilder cb, String value) {
+        return ((HibernateCriteriaBuilder) cb).value(value);
+    }
+    
+    private static String likePattern(String value) {
+        return "%" + value.toLowerCase() + "%";
+    }
+}
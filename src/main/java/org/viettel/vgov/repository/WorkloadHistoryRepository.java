@@ -1,12 +1,47 @@
 package org.viettel.vgov.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.viettel.vgov.model.WorkloadHistory;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface WorkloadHistoryRepository extends JpaRepository<WorkloadHistory, Long> {
     List<WorkloadHistory> findByProjectMember_IdOrderByChangeTimestampDesc(Long projectMemberId);
-}
\ No newline at end of file
+
+    /**
+     * Streams [memberId, userId, timestamp, workloadPercentage] allocation events in timestamp order, each
+     * setting the member's workload from that instant on. A membership starts on its joined date with the
+     * workload it was created with, changes with every history entry and ends (workload 0) on its left date
+     * or the closing date of its project, whichever comes first. Events at or after {@code from} (all when
+     * null) and before {@code to} are returned.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "WITH m AS (" +
+           "  SELECT pm.id, pm.user_id, CAST(pm.joined_date AS timestamp) AS start_ts, " +
+           "    CAST(LEAST(pm.left_date, CASE WHEN p.status = 'Closed' THEN p.actual_closed_date END) AS timestamp) AS end_ts, " +
+           "    COALESCE((SELECT h.old_workload_percentage FROM workload_history h WHERE h.project_member_id = pm.id " +
+           "      ORDER BY h.change_timestamp, h.id LIMIT 1), pm.workload_percentage) AS initial_workload " +
+           "  FROM project_members pm JOIN projects p ON p.id = pm.project_id), " +
+           "e AS (" +
+           "  SELECT m.id AS member_id, m.user_id, m.start_ts AS ts, 0 AS kind, 0 AS seq, m.initial_workload AS workload FROM m " +
+           "  WHERE m.end_ts IS NULL OR m.end_ts > m.start_ts " +
+           "  UNION ALL " +
+           "  SELECT m.id, m.user_id, GREATEST(h.change_timestamp, m.start_ts), 1, h.id, h.new_workload_percentage " +
+           "  FROM workload_history h JOIN m ON m.id = h.project_member_id " +
+           "  WHERE m.end_ts IS NULL OR GREATEST(h.change_timestamp, m.start_ts) < m.end_ts " +
+           "  UNION ALL " +
+           "  SELECT m.id, m.user_id, m.end_ts, 2, 0, 0 FROM m WHERE m.end_ts > m.start_ts) " +
+           "SELECT e.member_id, e.user_id, e.ts, e.workload FROM e " +
+           "WHERE (CAST(:from AS timestamp) IS NULL OR e.ts >= :from) AND e.ts < :to " +
+           "ORDER BY e.ts, e.kind, e.seq", nativeQuery = true)
+    Stream<Object[]> streamAllocationEvents(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,168 @@
+package org.viettel.vgov.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import org.viettel.vgov.exception.ResourceNotFoundException;
+import org.viettel.vgov.model.Project;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.repository.ProjectMemberRepository;
+import org.viettel.vgov.repository.ProjectRepository;
+import org.viettel.vgov.repository.UserRepository;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The authenticated caller for the current request. Identity and role come from the principal;
+ * the user entity and the project id sets are loaded on first use and reused for the rest of the
+ * request, so permission checks are set lookups instead of repeated queries.
+ * Memberships changed later in the same request are not reflected.
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class AccessContext {
+
+    private final UserRepository userRepository;
+    private final ProjectRepository projectRepository;
+    private final ProjectMemberRepository projectMemberRepository;
+
+    private UserPrincipal principal;
+    private User currentUser;
+    private Set<Long> managedProjectIds;
+    // Active memberships, whatever the project status
+    private Set<Long> memberProjectIds;
+    // Active memberships on projects that are not closed
+    private Set<Long> assignedProjectIds;
+    // Users assigned to open projects the caller manages
+    private Set<Long> teamUserIds;
+
+    public Long getUserId() {
+        return getPrincipal().getId();
+    }
+
+    public String getEmail() {
+        return getPrincipal().getEmail();
+    }
+
+    public User.Role getRole() {
+        return getPrincipal().getRole();
+    }
+
+    public boolean isAdmin() {
+        return getRole() == User.Role.admin;
+    }
+
+    public boolean isPm() {
+        return getRole() == User.Role.pm;
+    }
+
+    public User getCurrentUser() {
+        if (currentUser == null) {
+            currentUser = userRepository.findById(getUserId())
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        }
+        return currentUser;
+    }
+
+    public Set<Long> getManagedProjectIds() {
+        if (managedProjectIds == null) {
+            managedProjectIds = isPm() ? new HashSet<>(projectRepository.findIdsByPmEmail(getEmail())) : Set.of();
+        }
+        return managedProjectIds;
+    }
+
+    public Set<Long> getMemberProjectIds() {
+        if (memberProjectIds == null) {
+            loadMemberships();
+        }
+        return memberProjectIds;
+    }
+
+    public Set<Long> getAssignedProjectIds() {
+        if (assignedProjectIds == null) {
+            loadMemberships();
+        }
+        return assignedProjectIds;
+    }
+
+    public boolean manages(Long projectId) {
+        return getManagedProjectIds().contains(projectId);
+    }
+
+    public boolean manages(Project project) {
+        return isPm() && getEmail().equals(project.getPmEmail());
+    }
+
+    public boolean isMemberOf(Long projectId) {
+        return getMemberProjectIds().contains(projectId);
+    }
+
+    public boolean isAssignedTo(Long projectId) {
+        return getAssignedProjectIds().contains(projectId);
+    }
+
+    public boolean canAccessProject(Long projectId) {
+        switch (getRole()) {
+            case admin:
+                return true;
+            case pm:
+                return manages(projectId);
+            case dev:
+            case ba:
+            case test:
+                return isMemberOf(projectId);
+            default:
+                return false;
+        }
+    }
+
+    public boolean canAccessUserWorkLogs(Long userId) {
+        switch (getRole()) {
+            case admin:
+                return true;
+            case pm:
+                // PM can view work logs for users in their projects
+                if (teamUserIds == null) {
+                    teamUserIds = new HashSet<>(projectMemberRepository.findActiveUserIdsByPmEmail(getEmail()));
+                }
+                return teamUserIds.contains(userId);
+            case dev:
+            case ba:
+            case test:
+                // Employee can only see their own work logs
+                return getUserId().equals(userId);
+            default:
+                return false;
+        }
+    }
+
+    private void loadMemberships() {
+        Set<Long> member = new HashSet<>();
+        Set<Long> assigned = new HashSet<>();
+        for (Object[] membership : projectMemberRepository.findActiveProjectIdsAndStatusByUserId(getUserId())) {
+            Long projectId = (Long) membership[0];
+            member.add(projectId);
+            if (membership[1] != Project.Status.Closed) {
+                assigned.add(projectId);
+            }
+        }
+        memberProjectIds = member;
+        assignedProjectIds = assigned;
+    }
+
+    private UserPrincipal getPrincipal() {
+        if (principal == null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal)) {
+                throw new AccessDeniedException("Authentication required");
+            }
+            principal = (UserPrincipal) authentication.getPrincipal();
+        }
+        return principal;
+    }
+}
@@ -1,82 +1,128 @@
 package org.viettel.vgov.security;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import org.viettel.vgov.model.User;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_ACTIVE = "active";
+    private static final String CLAIM_FULL_NAME = "name";
+
+    private final TokenRevocationCache tokenRevocationCache;
+
     @Value("${spring.security.jwt.secret}")
     private String jwtSecret;
 
     @Value("${spring.security.jwt.expiration}")
     private int jwtExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    // The key and parser are immutable and thread-safe, so both are built once
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateJwtToken(Authentication authentication) {
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-
-        return Jwts.builder()
-                .setSubject(userPrincipal.getEmail())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+        return generateToken((UserPrincipal) authentication.getPrincipal());
     }
 
-    public String generateTokenFromEmail(String email) {
+    public String generateToken(UserPrincipal userPrincipal) {
+        Date now = new Date();
         return Jwts.builder()
-                .setSubject(email)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setSubject(userPrincipal.getEmail())
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_ROLE, userPrincipal.getRole().name())
+                .claim(CLAIM_ACTIVE, userPrincipal.isEnabled())
+                .claim(CLAIM_FULL_NAME, userPrincipal.getFullName())
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + jwtExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String getEmailFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
-
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Verifies the token in a single parse and builds the principal from its claims.
+     * Returns null when the token is invalid, expired, lacks the identity claims or was
+     * issued before the user was deactivated or had their role or email changed.
+     */
+    public UserPrincipal getPrincipalFromJwtToken(String token) {
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
-        } catch (SecurityException e) {
+            claims = jwtParser.parseClaimsJws(token).getBody();
+        } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
+            return null;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
+            return null;
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
+            return null;
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+            return null;
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+            return null;
+        }
+
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (userId == null || role == null || claims.getIssuedAt() == null) {
+            // Tokens issued before the identity claims were added require a new login
+            logger.error("JWT token is missing identity claims");
+            return null;
         }
-        return false;
+        if (tokenRevocationCache.isRevoked(userId.longValue(), claims.getIssuedAt())) {
+            logger.error("JWT token has been revoked for user {}", userId);
+            return null;
+        }
+
+        User.Role userRole;
+        try {
+            userRole = User.Role.valueOf(role);
+        } catch (IllegalArgumentException e) {
+            logger.error("JWT token has an unknown role: {}", role);
+            return null;
+        }
+
+        return new UserPrincipal(
+                userId.longValue(),
+                claims.getSubject(),
+                null,
+                claims.get(CLAIM_FULL_NAME, String.class),
+                userRole,
+                Boolean.TRUE.equals(claims.get(CLAIM_ACTIVE, Boolean.class))
+        );
     }
 }
@@ -0,0 +1,95 @@
+package org.viettel.vgov.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.viettel.vgov.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Tells whether a token was issued before its user's tokens were revoked (deactivation, role or email
+ * change). The cut-off is persisted in users.tokens_valid_from, so it holds across restarts and
+ * instances; authentication reads it through a short-lived cache, which bounds how long another
+ * instance may still accept a revoked token.
+ */
+@Component
+public class TokenRevocationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationCache.class);
+
+    private static final String CACHE_NAME = "tokensValidFrom";
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate newTransaction;
+    // User id -> epoch millisecond from which tokens are valid, 0 when never revoked
+    private final Cache<Long, Long> validFrom;
+
+    public TokenRevocationCache(UserRepository userRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${vgov.security.token-validity-cache.maximum-size}") long maximumSize,
+                                @Value("${vgov.security.token-validity-cache.ttl}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.validFrom = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validFrom, CACHE_NAME);
+    }
+
+    /**
+     * Revokes the user's current tokens; called in the transaction that changes the claims they carry.
+     * The cut-off is written with that change and moved again once it commits, as a login that read the
+     * user before the commit may sign a token with the old claims after the first write.
+     */
+    public void revoke(Long userId) {
+        userRepository.updateTokensValidFrom(userId, nextSecond());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            validFrom.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    newTransaction.executeWithoutResult(status -> userRepository.updateTokensValidFrom(userId, nextSecond()));
+                } catch (RuntimeException e) {
+                    logger.warn("Moving the token cut-off of user {} after commit failed", userId, e);
+                }
+                validFrom.invalidate(userId);
+            }
+        });
+    }
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        long userValidFrom = validFrom.get(userId, id -> userRepository.findTokensValidFromById(id)
+                .map(time -> time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .orElse(0L));
+        return issuedAt.getTime() < userValidFrom;
+    }
+
+    // Issued-at has second precision, so the cut-off is the next whole second: every token signed
+    // until now, including earlier in the current second, falls before it
+    private static LocalDateTime nextSecond() {
+        long now = System.currentTimeMillis();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli((now / 1000 + 1) * 1000), ZoneId.systemDefault());
+    }
+}
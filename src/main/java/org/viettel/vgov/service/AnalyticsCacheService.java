@@ -0,0 +1,192 @@
+package org.viettel.vgov.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
+import org.viettel.vgov.repository.ProjectMemberRepository;
+import org.viettel.vgov.repository.ProjectRepository;
+import org.viettel.vgov.repository.UserRepository;
+import org.viettel.vgov.security.AccessContext;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caches analytics and dashboard results per access scope: admin, a PM's email or a member's
+ * user id. An {@link AnalyticsDataChangedEvent} evicts, once its transaction commits, the admin
+ * scope and the scopes of every PM and member of the affected projects. Entries also expire
+ * after a fixed time, which bounds staleness from changes made through other instances.
+ * <p>
+ * Entries are futures that the first caller completes on its own thread, so a computation never
+ * holds a lock of the underlying map, and eviction also drops computations still in flight: a
+ * result read before the change is handed to the callers already waiting for it but never stored.
+ * <p>
+ * Cached values are shared between requests and must not be modified by callers.
+ */
+@Service
+public class AnalyticsCacheService {
+
+    private static final String CACHE_NAME = "analytics";
+
+    private final ProjectRepository projectRepository;
+    private final ProjectMemberRepository projectMemberRepository;
+    private final UserRepository userRepository;
+    private final AccessContext accessContext;
+    private final AsyncCache<Key, Object> cache;
+    private final Counter invalidations;
+
+    public AnalyticsCacheService(ProjectRepository projectRepository,
+                                 ProjectMemberRepository projectMemberRepository,
+                                 UserRepository userRepository,
+                                 AccessContext accessContext,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${vgov.analytics-cache.maximum-size}") long maximumSize,
+                                 @Value("${vgov.analytics-cache.ttl}") Duration ttl) {
+        this.projectRepository = projectRepository;
+        this.projectMemberRepository = projectMemberRepository;
+        this.userRepository = userRepository;
+        this.accessContext = accessContext;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        // cache.gets (hit/miss), cache.puts, cache.evictions and cache.size, tagged cache=analytics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+        this.invalidations = Counter.builder("cache.invalidations")
+                .tag("cache", CACHE_NAME)
+                .description("Entries removed because the data they were computed from changed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached result of the named computation for the caller's scope and the given
+     * parameters, computing it with the loader on a miss. Concurrent misses on the same key wait
+     * for a single computation.
+     */
+    public <T> T get(String name, List<?> params, Supplier<T> loader) {
+        return get(name, params, loader, result -> true);
+    }
+
+    /**
+     * Like {@link #get(String, List, Supplier)}, but a computed result is only stored if it is cacheable.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name, List<?> params, Supplier<T> loader, Predicate<? super T> cacheable) {
+        Key key = new Key(currentScope(), name, params);
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> future = cache.get(key, (k, executor) -> created);
+        if (future != created) {
+            return (T) join(future);
+        }
+        T computed;
+        try {
+            computed = loader.get();
+        } catch (RuntimeException | Error e) {
+            // Failed futures are removed by the cache
+            created.completeExceptionally(e);
+            throw e;
+        }
+        if (!cacheable.test(computed)) {
+            cache.asMap().remove(key, created);
+        }
+        created.complete(computed);
+        return computed;
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onDataChanged(AnalyticsDataChangedEvent event) {
+        // Resolved now, inside the writing transaction, so deleted projects and replaced PMs are still found
+        Set<Long> projectIds = new HashSet<>(event.projectIds());
+        Set<Long> userIds = new HashSet<>(event.userIds());
+        Set<Scope> scopes = new HashSet<>();
+        scopes.add(Scope.ADMIN);
+
+        if (!userIds.isEmpty()) {
+            projectIds.addAll(projectMemberRepository.findProjectIdsByUserIdIn(userIds));
+            userRepository.findEmailsByIdIn(userIds).forEach(email -> scopes.add(Scope.pm(email)));
+        }
+        if (!projectIds.isEmpty()) {
+            projectRepository.findPmEmailsByIdIn(projectIds).forEach(email -> scopes.add(Scope.pm(email)));
+            userIds.addAll(projectMemberRepository.findUserIdsByProjectIdIn(projectIds));
+        }
+        userIds.forEach(userId -> scopes.add(Scope.member(userId)));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(scopes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(scopes);
+            }
+        });
+    }
+
+    // Also removes computations in flight, so they are not stored once they complete
+    private void evict(Set<Scope> scopes) {
+        cache.asMap().keySet().removeIf(key -> {
+            if (scopes.contains(key.scope)) {
+                invalidations.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private Scope currentScope() {
+        switch (accessContext.getRole()) {
+            case admin:
+                return Scope.ADMIN;
+            case pm:
+                return Scope.pm(accessContext.getEmail());
+            default:
+                return Scope.member(accessContext.getUserId());
+        }
+    }
+
+    private record Scope(String type, Object id) {
+
+        static final Scope ADMIN = new Scope("admin", null);
+
+        static Scope pm(String email) {
+            return new Scope("pm", email);
+        }
+
+        static Scope member(Long userId) {
+            return new Scope("member", userId);
+        }
+    }
+
+    private record Key(Scope scope, String name, List<?> params) {
+    }
+}
@@ -1,23 +1,22 @@
 package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.viettel.vgov.dto.response.AnalyticsResponseDto;
 import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.model.Project;
 import org.viettel.vgov.model.User;
-import org.viettel.vgov.repository.ProjectMemberRepository;
 import org.viettel.vgov.repository.ProjectRepository;
 import org.viettel.vgov.repository.UserRepository;
-import org.viettel.vgov.repository.WorkLogRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.repository.WorkLogDailyRollupRepository;
+import org.viettel.vgov.security.AccessContext;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,12 +27,17 @@ public class AnalyticsService {
     
     private final UserRepository userRepository;
     private final ProjectRepository projectRepository;
-    private final ProjectMemberRepository projectMemberRepository;
-    private final WorkLogRepository workLogRepository;
+    private final WorkLogDailyRollupRepository workLogDailyRollupRepository;
+    private final AccessContext accessContext;
+    private final WorkloadIndexService workloadIndexService;
+    private final AnalyticsCacheService analyticsCacheService;
     
     public AnalyticsResponseDto getProjectAnalytics() {
-        User currentUser = getCurrentUser();
-        List<Project> projects = getAccessibleProjects(currentUser);
+        return analyticsCacheService.get("analytics.projects", List.of(), this::buildProjectAnalytics);
+    }
+    
+    private AnalyticsResponseDto buildProjectAnalytics() {
+        List<Project> projects = getAccessibleProjects();
         
         AnalyticsResponseDto analytics = new AnalyticsResponseDto();
         
@@ -66,7 +70,11 @@ public class AnalyticsService {
     }
     
     public AnalyticsResponseDto getEmployeeAnalytics() {
-        List<User> employees = userRepository.findByIsActiveTrue();
+        return analyticsCacheService.get("analytics.employees", List.of(), this::buildEmployeeAnalytics);
+    }
+    
+    private AnalyticsResponseDto buildEmployeeAnalytics() {
+        List<UserWorkload> employees = getActiveUserWorkloads();
         
         AnalyticsResponseDto analytics = new AnalyticsResponseDto();
         
@@ -77,20 +85,19 @@ public class AnalyticsService {
         // Employees by role
         Map<String, Long> employeesByRole = employees.stream()
                 .collect(Collectors.groupingBy(
-                    u -> u.getRole().name(),
+                    u -> u.role().name(),
                     Collectors.counting()
                 ));
         analytics.setEmployeesByRole(employeesByRole);
         
         // Average workload
         BigDecimal totalWorkload = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
-                .map(u -> projectMemberRepository.getTotalWorkloadByUserId(u.getId()))
-                .filter(Objects::nonNull)
+                .filter(u -> u.role() != User.Role.admin)
+                .map(UserWorkload::totalWorkload)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
         long nonAdminEmployees = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
+                .filter(u -> u.role() != User.Role.admin)
                 .count();
         
         BigDecimal averageWorkload = nonAdminEmployees > 0 
@@ -102,9 +109,12 @@ public class AnalyticsService {
     }
     
     public AnalyticsResponseDto getWorkloadAnalytics() {
-        User currentUser = getCurrentUser();
-        List<User> employees = userRepository.findByIsActiveTrue();
-        List<Project> projects = getAccessibleProjects(currentUser);
+        return analyticsCacheService.get("analytics.workload", List.of(), this::buildWorkloadAnalytics);
+    }
+    
+    private AnalyticsResponseDto buildWorkloadAnalytics() {
+        List<UserWorkload> employees = getActiveUserWorkloads();
+        List<Project> projects = getAccessibleProjects();
         
         AnalyticsResponseDto analytics = new AnalyticsResponseDto();
         
@@ -140,20 +150,19 @@ public class AnalyticsService {
         // Employees by role
         Map<String, Long> employeesByRole = employees.stream()
                 .collect(Collectors.groupingBy(
-                    u -> u.getRole().name(),
+                    u -> u.role().name(),
                     Collectors.counting()
                 ));
         analytics.setEmployeesByRole(employeesByRole);
         
         // Average workload
         BigDecimal totalWorkload = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
-                .map(u -> projectMemberRepository.getTotalWorkloadByUserId(u.getId()))
-                .filter(Objects::nonNull)
+                .filter(u -> u.role() != User.Role.admin)
+                .map(UserWorkload::totalWorkload)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
         long nonAdminEmployees = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
+                .filter(u -> u.role() != User.Role.admin)
                 .count();
         
         BigDecimal averageWorkload = nonAdminEmployees > 0 
@@ -168,9 +177,8 @@ public class AnalyticsService {
             if (role == User.Role.admin) continue;
             
             BigDecimal roleWorkload = employees.stream()
-                    .filter(u -> u.getRole() == role)
-                    .map(u -> projectMemberRepository.getTotalWorkloadByUserId(u.getId()))
-                    .filter(Objects::nonNull)
+                    .filter(u -> u.role() == role)
+                    .map(UserWorkload::totalWorkload)
                     .reduce(BigDecimal.ZERO, BigDecimal::add);
             
             workloadByRole.put(role.name(), roleWorkload);
@@ -179,37 +187,24 @@ public class AnalyticsService {
         
         // Top workload users
         List<AnalyticsResponseDto.UserWorkloadDto> topWorkloadUsers = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
-                .map(u -> {
-                    BigDecimal workload = projectMemberRepository.getTotalWorkloadByUserId(u.getId());
-                    Integer projectCount = projectMemberRepository.countActiveProjectsByUserId(u.getId());
-                    
-                    return new AnalyticsResponseDto.UserWorkloadDto(
-                            u.getId(),
-                            u.getFullName(),
-                            u.getEmail(),
-                            workload != null ? workload : BigDecimal.ZERO,
-                            projectCount != null ? projectCount : 0
-                    );
-                })
+                .filter(u -> u.role() != User.Role.admin)
+                .map(u -> new AnalyticsResponseDto.UserWorkloadDto(
+                        u.userId(),
+                        u.fullName(),
+                        u.email(),
+                        u.totalWorkload(),
+                        u.projectCount()
+                ))
                 .sorted((u1, u2) -> u2.getTotalWorkload().compareTo(u1.getTotalWorkload()))
                 .collect(Collectors.toList());
         
         analytics.setTopWorkloadUsers(topWorkloadUsers);
         
         // System workload utilization
-        BigDecimal totalCapacity = BigDecimal.valueOf(employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
-                .count() * 100);
-        
-        BigDecimal totalUsedWorkload = employees.stream()
-                .filter(u -> u.getRole() != User.Role.admin)
-                .map(u -> projectMemberRepository.getTotalWorkloadByUserId(u.getId()))
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalCapacity = BigDecimal.valueOf(nonAdminEmployees * 100);
         
         BigDecimal utilization = totalCapacity.compareTo(BigDecimal.ZERO) > 0
-                ? totalUsedWorkload.divide(totalCapacity, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                ? totalWorkload.divide(totalCapacity, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
                 : BigDecimal.ZERO;
         
         analytics.setSystemWorkloadUtilization(utilization);
@@ -221,155 +216,211 @@ public class AnalyticsService {
     }
     
     public AnalyticsResponseDto getProjectTimeline(Long projectId) {
-        User currentUser = getCurrentUser();
+        return analyticsCacheService.get("analytics.projectTimeline", List.of(projectId), () -> buildProjectTimeline(projectId));
+    }
+    
+    private AnalyticsResponseDto buildProjectTimeline(Long projectId) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + projectId));
         
         // Check access permission
-        if (!canAccessProject(currentUser, project)) {
+        if (!canAccessProject(project)) {
             throw new RuntimeException("Access denied to this project");
         }
         
         AnalyticsResponseDto analytics = new AnalyticsResponseDto();
         
+        // Progress is measured up to the closing date of a closed project, otherwise up to today
+        LocalDate asOf = project.getStatus() == Project.Status.Closed && project.getActualClosedDate() != null
+                ? project.getActualClosedDate()
+                : LocalDate.now();
+        
         // Project timeline
-        List<AnalyticsResponseDto.ProjectTimelineDto> timeline = Arrays.asList(
-                new AnalyticsResponseDto.ProjectTimelineDto(
-                        project.getId(),
-                        project.getProjectName(),
-                        project.getStartDate(),
-                        project.getEndDate(),
-                        project.getStatus().getDisplayName(),
-                        calculateProjectCompletion(projectId)
-                )
-        );
+        List<AnalyticsResponseDto.ProjectTimelineDto> timeline = Arrays.asList(buildProjectProgress(project, asOf));
         analytics.setProjectMilestones(timeline);
         
         // Work log trends for the project
-        List<AnalyticsResponseDto.WorkLogSummaryDto> workLogTrends = workLogRepository.findWorkLogSummaryByProject(projectId);
+        List<AnalyticsResponseDto.WorkLogSummaryDto> workLogTrends = workLogDailyRollupRepository.findWorkLogSummaryByProject(projectId);
         analytics.setWorkLogTrends(workLogTrends);
         
+        // Daily burn-up of logged hours
+        List<AnalyticsResponseDto.BurnUpPointDto> burnUp = workLogDailyRollupRepository
+                .findDailyBurnUp(projectId, project.getStartDate(), asOf).stream()
+                .map(row -> new AnalyticsResponseDto.BurnUpPointDto(row.getDay(), row.getHours(), row.getCumulative()))
+                .collect(Collectors.toList());
+        analytics.setBurnUp(burnUp);
+        
         return analytics;
     }
     
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        return userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    /**
+     * Completion, burn rate and projected end date from the project's logged hours counter and estimated effort.
+     */
+    static AnalyticsResponseDto.ProjectTimelineDto buildProjectProgress(Project project, LocalDate asOf) {
+        BigDecimal loggedHours = project.getLoggedHours() != null ? project.getLoggedHours() : BigDecimal.ZERO;
+        BigDecimal estimatedHours = project.getEstimatedEffortHours();
+        long elapsedDays = ChronoUnit.DAYS.between(project.getStartDate(), asOf) + 1;
+        
+        BigDecimal completion = null;
+        if (estimatedHours != null && estimatedHours.signum() > 0) {
+            completion = loggedHours.multiply(BigDecimal.valueOf(100))
+                    .divide(estimatedHours, 2, RoundingMode.HALF_UP)
+                    .min(BigDecimal.valueOf(100).setScale(2));
+        }
+        
+        BigDecimal burnRate = elapsedDays > 0
+                ? loggedHours.divide(BigDecimal.valueOf(elapsedDays), 2, RoundingMode.HALF_UP)
+                : null;
+        
+        LocalDate projectedEndDate = null;
+        if (completion != null && project.getStatus() != Project.Status.Closed) {
+            BigDecimal remainingHours = estimatedHours.subtract(loggedHours);
+            if (remainingHours.signum() <= 0) {
+                projectedEndDate = asOf;
+            } else if (elapsedDays > 0 && loggedHours.signum() > 0) {
+                // remaining / (logged / elapsed), without rounding the rate first
+                long remainingDays = remainingHours.multiply(BigDecimal.valueOf(elapsedDays))
+                        .divide(loggedHours, 0, RoundingMode.CEILING)
+                        .longValueExact();
+                projectedEndDate = asOf.plusDays(remainingDays);
+            }
+        }
+        
+        return new AnalyticsResponseDto.ProjectTimelineDto(
+                project.getId(),
+                project.getProjectName(),
+                project.getStartDate(),
+                project.getEndDate(),
+                project.getStatus().getDisplayName(),
+                completion,
+                estimatedHours,
+                loggedHours,
+                burnRate,
+                projectedEndDate);
+    }
+    
+    /**
+     * Workload and active project count of every active user, read from the workload index.
+     */
+    private List<UserWorkload> getActiveUserWorkloads() {
+        return userRepository.findByIsActiveTrueOrderByIdAsc().stream()
+                .map(user -> new UserWorkload(
+                        user.getId(),
+                        user.getFullName(),
+                        user.getEmail(),
+                        user.getRole(),
+                        workloadIndexService.getTotalWorkload(user.getId()),
+                        workloadIndexService.getActiveProjectCount(user.getId())))
+                .collect(Collectors.toList());
     }
     
-    private List<Project> getAccessibleProjects(User user) {
-        switch (user.getRole()) {
+    private record UserWorkload(Long userId, String fullName, String email, User.Role role,
+                                BigDecimal totalWorkload, int projectCount) {
+    }
+    
+    private List<Project> getAccessibleProjects() {
+        switch (accessContext.getRole()) {
             case admin:
                 return projectRepository.findAll();
             case pm:
-                return projectRepository.findByPmEmail(user.getEmail());
+                return projectRepository.findByPmEmail(accessContext.getEmail());
             default:
-                return projectRepository.findProjectsByUserId(user.getId());
+                return projectRepository.findProjectsByUserId(accessContext.getUserId());
         }
     }
     
-    private boolean canAccessProject(User user, Project project) {
-        switch (user.getRole()) {
+    private boolean canAccessProject(Project project) {
+        switch (accessContext.getRole()) {
             case admin:
                 return true;
             case pm:
-                return project.getPmEmail().equals(user.getEmail());
+                return accessContext.manages(project);
             default:
-                return projectMemberRepository.existsByProjectIdAndUserIdAndIsActive(project.getId(), user.getId(), true);
+                return accessContext.isMemberOf(project.getId());
         }
     }
     
-    private BigDecimal calculateProjectCompletion(Long projectId) {
-        // Simple completion calculation based on work logs vs estimated effort
-        // This is a placeholder - real implementation would be more sophisticated
-        Long totalWorkLogs = workLogRepository.countByProjectId(projectId);
-        return totalWorkLogs != null ? BigDecimal.valueOf(Math.min(totalWorkLogs * 10, 100)) : BigDecimal.ZERO;
+    public AnalyticsResponseDto getProjectTimelineAnalytics(LocalDate startDate, LocalDate endDate) {
+        return analyticsCacheService.get("analytics.monthlyProjectStatus", List.of(startDate, endDate),
+                () -> buildProjectTimelineAnalytics(startDate, endDate));
     }
     
-    public AnalyticsResponseDto getProjectTimelineAnalytics(LocalDate startDate, LocalDate endDate) {
-        User currentUser = getCurrentUser();
-        List<Project> allProjects = getAccessibleProjects(currentUser);
+    private AnalyticsResponseDto buildProjectTimelineAnalytics(LocalDate startDate, LocalDate endDate) {
+        List<Project> allProjects = getAccessibleProjects();
         
         AnalyticsResponseDto analytics = new AnalyticsResponseDto();
         
         // Create monthly project status data
-        List<AnalyticsResponseDto.MonthlyProjectStatusDto> monthlyData = new ArrayList<>();
+        List<AnalyticsResponseDto.MonthlyProjectStatusDto> monthlyData =
+                countMonthlyProjectStatuses(allProjects, startDate, endDate);
         
-        LocalDate current = startDate.withDayOfMonth(1); // Start of month
-        while (!current.isAfter(endDate.withDayOfMonth(1))) {
-            int completed = 0;
-            int inProgress = 0;
-            int planned = 0;
-            
-            LocalDate monthStart = current;
-            LocalDate monthEnd = current.plusMonths(1).minusDays(1);
-            
-            for (Project project : allProjects) {
-                LocalDate projectStart = project.getStartDate();
-                LocalDate projectEnd = project.getEndDate();
-                
-                // Skip projects that haven't started yet or ended before this month
-                if (projectStart == null || projectStart.isAfter(monthEnd)) {
-                    // Project hasn't started yet - count as planned if start date is in future
-                    if (projectStart != null && projectStart.isAfter(monthEnd)) {
-                        planned++;
-                    }
-                    continue;
-                }
-                
-                // Skip projects that ended before this month started
-                if (projectEnd != null && projectEnd.isBefore(monthStart)) {
-                    continue;
-                }
-                
-                // Project was active during this month
-                // Determine status based on project end date and current status
-                if (projectEnd != null && projectEnd.isBefore(monthEnd.plusDays(1))) {
-                    // Project completed during or before this month
-                    completed++;
-                } else {
-                    // Project was in progress during this month
-                    switch (project.getStatus()) {
-                        case InProgress:
-                            inProgress++;
-                            break;
-                        case Hold:
-                            inProgress++; // Count Hold as inProgress for simplicity
-                            break;
-                        case Closed:
-                            // If project is closed but end date is after this month,
-                            // it was completed after this month, so count as in progress for this month
-                            if (projectEnd == null || projectEnd.isAfter(monthEnd)) {
-                                completed++;
-                            } else {
-                                inProgress++;
-                            }
-                            break;
-                        case Presale:
-                            planned++;
-                            break;
-                        default:
-                            inProgress++;
-                            break;
-                    }
-                }
+        analytics.setMonthlyProjectStatus(monthlyData);
+        return analytics;
+    }
+    
+    /**
+     * Counts, for each month from startDate to endDate, the projects that were completed, in progress
+     * or planned in that month. A project is planned before its start month, counted by its status
+     * from its start month until its end month, and completed in its end month. Instead of checking
+     * every project against every month, each project adds its ranges to per-status difference arrays,
+     * which are then summed over the months.
+     */
+    static List<AnalyticsResponseDto.MonthlyProjectStatusDto> countMonthlyProjectStatuses(
+            List<Project> projects, LocalDate startDate, LocalDate endDate) {
+        YearMonth firstMonth = YearMonth.from(startDate);
+        int months = (int) Math.max(firstMonth.until(YearMonth.from(endDate), ChronoUnit.MONTHS) + 1, 0);
+        
+        int[] completed = new int[months + 1];
+        int[] inProgress = new int[months + 1];
+        int[] planned = new int[months + 1];
+        
+        for (Project project : projects) {
+            if (project.getStartDate() == null) {
+                continue;
             }
+            long start = firstMonth.until(YearMonth.from(project.getStartDate()), ChronoUnit.MONTHS);
+            long end = project.getEndDate() != null
+                    ? firstMonth.until(YearMonth.from(project.getEndDate()), ChronoUnit.MONTHS)
+                    : Long.MAX_VALUE;
             
-            AnalyticsResponseDto.MonthlyProjectStatusDto monthData =
-                new AnalyticsResponseDto.MonthlyProjectStatusDto(
-                    current.getYear() + "-" + String.format("%02d", current.getMonthValue()),
-                    completed,
-                    inProgress,
-                    planned
-                );
-            
-            monthlyData.add(monthData);
-            current = current.plusMonths(1);
+            addRange(planned, Long.MIN_VALUE, start, months);
+            switch (project.getStatus()) {
+                case Closed:
+                    addRange(completed, start, end, months);
+                    break;
+                case Presale:
+                    addRange(planned, start, end, months);
+                    break;
+                default:
+                    addRange(inProgress, start, end, months);
+                    break;
+            }
+            if (project.getEndDate() != null && end >= start) {
+                addRange(completed, end, end + 1, months);
+            }
         }
         
-        analytics.setMonthlyProjectStatus(monthlyData);
-        return analytics;
+        List<AnalyticsResponseDto.MonthlyProjectStatusDto> monthlyData = new ArrayList<>(months);
+        int completedCount = 0;
+        int inProgressCount = 0;
+        int plannedCount = 0;
+        for (int i = 0; i < months; i++) {
+            completedCount += completed[i];
+            inProgressCount += inProgress[i];
+            plannedCount += planned[i];
+            monthlyData.add(new AnalyticsResponseDto.MonthlyProjectStatusDto(
+                    firstMonth.plusMonths(i).toString(), completedCount, inProgressCount, plannedCount));
+        }
+        return monthlyData;
+    }
+    
+    // Adds one to months [from, to) of a difference array covering months [0, months)
+    private static void addRange(int[] diff, long from, long to, int months) {
+        int clippedFrom = (int) Math.min(Math.max(from, 0), months);
+        int clippedTo = (int) Math.min(Math.max(to, 0), months);
+        if (clippedFrom < clippedTo) {
+            diff[clippedFrom]++;
+            diff[clippedTo]--;
+        }
     }
 }
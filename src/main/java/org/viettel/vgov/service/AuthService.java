@@ -62,7 +62,9 @@ public class AuthService {
     }
     
     public String refreshToken(String email) {
-        return jwtUtils.generateTokenFromEmail(email);
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return jwtUtils.generateToken(UserPrincipal.create(user));
     }
     
     public void logout() {
@@ -0,0 +1,271 @@
+package org.viettel.vgov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.dto.response.CapacityForecastResponseDto;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.repository.ProjectMemberRepository;
+import org.viettel.vgov.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Projects each user's free capacity week by week from their current memberships. A membership counts
+ * from its joined date until its left date (exclusive) or its project's end date (inclusive), whichever
+ * comes first, weighted by the number of days it covers in each week.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CapacityForecastService {
+
+    static final int MAX_WEEKS = 104;
+
+    // Users computed sequentially by one fork-join leaf
+    private static final int LEAF_USERS = 256;
+
+    // 100% over the seven days of a week, in hundredths of a percent times days
+    private static final int FULL_WEEK = 100_00 * 7;
+
+    private final UserRepository userRepository;
+    private final ProjectMemberRepository projectMemberRepository;
+    private final AnalyticsCacheService analyticsCacheService;
+
+    public CapacityForecastResponseDto getCapacityForecast(int weeks, String role) {
+        if (weeks < 1 || weeks > MAX_WEEKS) {
+            throw new IllegalArgumentException("Weeks must be between 1 and " + MAX_WEEKS);
+        }
+        User.Role userRole = parseRole(role);
+        LocalDate start = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return analyticsCacheService.get("analytics.capacityForecast", Arrays.asList(start, weeks, userRole),
+                () -> buildCapacityForecast(start, weeks, userRole));
+    }
+
+    private CapacityForecastResponseDto buildCapacityForecast(LocalDate start, int weeks, User.Role role) {
+        List<Object[]> staff = userRepository.findActiveStaff(role);
+        long[] userIds = new long[staff.size()];
+        for (int u = 0; u < userIds.length; u++) {
+            userIds[u] = ((Number) staff.get(u)[0]).longValue();
+        }
+
+        Allocations allocations = Allocations.load(userIds, projectMemberRepository.findUpcomingAllocations(start, role), start, weeks * 7);
+        Forecast forecast = forecast(allocations, weeks);
+
+        List<LocalDate> weekStarts = new ArrayList<>(weeks);
+        List<BigDecimal> totalAvailable = new ArrayList<>(weeks);
+        List<Integer> overallocated = new ArrayList<>(weeks);
+        for (int w = 0; w < weeks; w++) {
+            weekStarts.add(start.plusWeeks(w));
+            totalAvailable.add(toPercent(forecast.totalAvailable[w]));
+            overallocated.add(forecast.overallocatedUsers[w]);
+        }
+
+        List<CapacityForecastResponseDto.UserCapacityDto> users = new ArrayList<>(userIds.length);
+        for (int u = 0; u < userIds.length; u++) {
+            List<BigDecimal> available = new ArrayList<>(weeks);
+            for (int w = 0; w < weeks; w++) {
+                available.add(toPercent(forecast.available[u * weeks + w]));
+            }
+            Object[] user = staff.get(u);
+            users.add(new CapacityForecastResponseDto.UserCapacityDto(
+                    userIds[u], (String) user[1], ((User.Role) user[2]).name(), available));
+        }
+
+        return new CapacityForecastResponseDto(role != null ? role.name() : null, weekStarts, totalAvailable, overallocated, users);
+    }
+
+    /**
+     * Builds every user's week array and the per-week totals, splitting the users across the common fork-join pool.
+     */
+    static Forecast forecast(Allocations allocations, int weeks) {
+        Forecast forecast = new Forecast(allocations.userCount(), weeks);
+        Totals totals = ForkJoinPool.commonPool().invoke(new ForecastTask(allocations, forecast, 0, allocations.userCount()));
+        System.arraycopy(totals.available, 0, forecast.totalAvailable, 0, weeks);
+        System.arraycopy(totals.overallocated, 0, forecast.overallocatedUsers, 0, weeks);
+        return forecast;
+    }
+
+    private static BigDecimal toPercent(long basisPointDays) {
+        return BigDecimal.valueOf(basisPointDays).divide(BigDecimal.valueOf(100 * 7), 2, RoundingMode.HALF_UP);
+    }
+
+    private static User.Role parseRole(String role) {
+        if (role == null || role.isBlank()) {
+            return null;
+        }
+        try {
+            User.Role userRole = User.Role.valueOf(role.toLowerCase());
+            if (userRole != User.Role.admin) {
+                return userRole;
+            }
+        } catch (IllegalArgumentException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid role: " + role + ". Valid roles are: pm, dev, ba, test");
+    }
+
+    /**
+     * Memberships grouped by user: those of user {@code u} are {@code offsets[u]} (inclusive) to
+     * {@code offsets[u + 1]} (exclusive), as day offsets from the forecast start clipped to the horizon.
+     */
+    static final class Allocations {
+
+        final int[] offsets;
+        final int[] startDays;
+        final int[] endDays;
+        final int[] basisPoints;
+
+        Allocations(int[] offsets, int[] startDays, int[] endDays, int[] basisPoints) {
+            this.offsets = offsets;
+            this.startDays = startDays;
+            this.endDays = endDays;
+            this.basisPoints = basisPoints;
+        }
+
+        int userCount() {
+            return offsets.length - 1;
+        }
+
+        // Rows are [userId, workloadPercentage, joinedDate, leftDate, projectEndDate] ordered by user, like userIds
+        static Allocations load(long[] userIds, List<Object[]> rows, LocalDate start, int days) {
+            int[] offsets = new int[userIds.length + 1];
+            int[] startDays = new int[rows.size()];
+            int[] endDays = new int[rows.size()];
+            int[] basisPoints = new int[rows.size()];
+            int count = 0;
+            int u = 0;
+            for (Object[] row : rows) {
+                long userId = ((Number) row[0]).longValue();
+                while (u < userIds.length && userIds[u] < userId) {
+                    offsets[++u] = count;
+                }
+                if (u == userIds.length || userIds[u] != userId) {
+                    continue;
+                }
+                LocalDate leftDate = (LocalDate) row[3];
+                LocalDate projectEndDate = (LocalDate) row[4];
+                long end = days;
+                if (leftDate != null) {
+                    end = Math.min(end, ChronoUnit.DAYS.between(start, leftDate));
+                }
+                if (projectEndDate != null) {
+                    end = Math.min(end, ChronoUnit.DAYS.between(start, projectEndDate) + 1);
+                }
+                long begin = Math.max(0, ChronoUnit.DAYS.between(start, (LocalDate) row[2]));
+                if (begin >= end) {
+                    continue;
+                }
+                startDays[count] = (int) begin;
+                endDays[count] = (int) end;
+                basisPoints[count] = ((BigDecimal) row[1]).movePointRight(2).intValueExact();
+                count++;
+            }
+            while (u < userIds.length) {
+                offsets[++u] = count;
+            }
+            return new Allocations(offsets, Arrays.copyOf(startDays, count), Arrays.copyOf(endDays, count),
+                    Arrays.copyOf(basisPoints, count));
+        }
+    }
+
+    /**
+     * Free capacity in hundredths of a percent times days: per user and week, flattened as
+     * {@code available[user * weeks + week]}, and per week summed over the users with free capacity.
+     */
+    static final class Forecast {
+
+        final int weeks;
+        final int[] available;
+        final long[] totalAvailable;
+        final int[] overallocatedUsers;
+
+        Forecast(int users, int weeks) {
+            this.weeks = weeks;
+            this.available = new int[users * weeks];
+            this.totalAvailable = new long[weeks];
+            this.overallocatedUsers = new int[weeks];
+        }
+    }
+
+    private static final class Totals {
+
+        final long[] available;
+        final int[] overallocated;
+
+        Totals(int weeks) {
+            this.available = new long[weeks];
+            this.overallocated = new int[weeks];
+        }
+
+        Totals merge(Totals other) {
+            for (int w = 0; w < available.length; w++) {
+                available[w] += other.available[w];
+                overallocated[w] += other.overallocated[w];
+            }
+            return this;
+        }
+    }
+
+    private static final class ForecastTask extends RecursiveTask<Totals> {
+
+        private final Allocations allocations;
+        private final Forecast forecast;
+        private final int from;
+        private final int to;
+
+        ForecastTask(Allocations allocations, Forecast forecast, int from, int to) {
+            this.allocations = allocations;
+            this.forecast = forecast;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > LEAF_USERS) {
+                int middle = (from + to) >>> 1;
+                ForecastTask left = new ForecastTask(allocations, forecast, from, middle);
+                left.fork();
+                Totals right = new ForecastTask(allocations, forecast, middle, to).compute();
+                return right.merge(left.join());
+            }
+
+            int weeks = forecast.weeks;
+            int[] available = forecast.available;
+            Totals totals = new Totals(weeks);
+            for (int u = from; u < to; u++) {
+                int base = u * weeks;
+                Arrays.fill(available, base, base + weeks, FULL_WEEK);
+                for (int a = allocations.offsets[u]; a < allocations.offsets[u + 1]; a++) {
+                    int start = allocations.startDays[a];
+                    int end = allocations.endDays[a];
+                    int basisPoints = allocations.basisPoints[a];
+                    for (int w = start / 7; w * 7 < end; w++) {
+                        int days = Math.min(end, w * 7 + 7) - Math.max(start, w * 7);
+                        available[base + w] -= basisPoints * days;
+                    }
+                }
+                for (int w = 0; w < weeks; w++) {
+                    int value = available[base + w];
+                    if (value > 0) {
+                        totals.available[w] += value;
+                    } else if (value < 0) {
+                        totals.overallocated[w]++;
+                    }
+                }
+            }
+            return totals;
+        }
+    }
+}
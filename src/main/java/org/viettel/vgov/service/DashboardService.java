@@ -1,27 +1,46 @@
 package org.viettel.vgov.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.viettel.vgov.dto.response.DashboardResponseDto;
 import org.viettel.vgov.dto.response.ProjectResponseDto;
 import org.viettel.vgov.dto.response.WorkLogResponseDto;
-import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.ProjectMapper;
 import org.viettel.vgov.mapper.WorkLogMapper;
 import org.viettel.vgov.model.Project;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.model.WorkLog;
 import org.viettel.vgov.repository.*;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.security.AccessContext;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,121 +48,242 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DashboardService {
     
+    private static final Logger logger = LoggerFactory.getLogger(DashboardService.class);
+    
+    // Kept below the connection pool size, as every running section holds a connection
+    private static final int SECTION_THREADS = 8;
+    private static final int SECTION_QUEUE_CAPACITY = 200;
+    
+    private static final int RECENT_WORK_LOGS = 10;
+    
     private final UserRepository userRepository;
     private final ProjectRepository projectRepository;
     private final WorkLogRepository workLogRepository;
-    private final NotificationRepository notificationRepository;
+    private final WorkLogMonthlyRollupRepository workLogMonthlyRollupRepository;
     private final ProjectMemberRepository projectMemberRepository;
     private final ProjectMapper projectMapper;
     private final WorkLogMapper workLogMapper;
+    private final AccessContext accessContext;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final UnreadNotificationCountService unreadNotificationCountService;
+    private final PlatformTransactionManager transactionManager;
+    
+    @Value("${vgov.dashboard.section-timeout}")
+    private Duration sectionTimeout;
     
+    private final ExecutorService sectionExecutor = newSectionExecutor();
+    
+    /**
+     * Computes the dashboard sections concurrently, each in its own read-only transaction. A section
+     * that fails or is not done within the section timeout is left empty and named in
+     * degradedSections; dashboards with degraded sections are not cached.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public DashboardResponseDto getDashboardData() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        // The request-scoped access context is not available on section threads
+        Caller caller = new Caller(accessContext.getRole(), accessContext.getUserId(), accessContext.getEmail());
+        long deadline = System.nanoTime() + sectionTimeout.toNanos();
         
-        DashboardResponseDto dashboard = new DashboardResponseDto();
+        Future<Long> unreadNotificationCount = submitSection(
+                () -> unreadNotificationCountService.getUnreadCount(caller.userId()));
         
-        // Get user stats (only for admin)
-        if (currentUser.getRole() == User.Role.admin) {
-            dashboard.setUserStats(getUserStats());
-        }
+        // Keyed by date as well, since the work log stats are relative to the current month
+        DashboardResponseDto cached = analyticsCacheService.get("dashboard", List.of(LocalDate.now()),
+                () -> buildDashboardData(caller, deadline), result -> result.getDegradedSections().isEmpty());
         
-        // Get project stats
-        dashboard.setProjectStats(getProjectStats(currentUser));
-        
-        // Get work log stats
-        dashboard.setWorkLogStats(getWorkLogStats(currentUser));
+        // The cached instance is shared, so the per-user notification count goes on a copy
+        DashboardResponseDto dashboard = new DashboardResponseDto();
+        dashboard.setUserStats(cached.getUserStats());
+        dashboard.setProjectStats(cached.getProjectStats());
+        dashboard.setWorkLogStats(cached.getWorkLogStats());
+        dashboard.setRecentProjects(cached.getRecentProjects());
+        dashboard.setRecentWorkLogs(cached.getRecentWorkLogs());
         
-        // Get recent projects
-        dashboard.setRecentProjects(getRecentProjects(currentUser));
+        List<String> degradedSections = new ArrayList<>(cached.getDegradedSections());
+        Long unreadCount = awaitSection("unreadNotificationCount", unreadNotificationCount, deadline, degradedSections);
+        dashboard.setUnreadNotificationCount(unreadCount != null ? unreadCount : 0);
+        dashboard.setDegradedSections(degradedSections);
         
-        // Get recent work logs
-        dashboard.setRecentWorkLogs(getRecentWorkLogs(currentUser));
+        return dashboard;
+    }
+    
+    private DashboardResponseDto buildDashboardData(Caller caller, long deadline) {
+        // Get user stats (only for admin)
+        Future<DashboardResponseDto.UserStats> userStats = caller.role() == User.Role.admin
+                ? submitSection(this::getUserStats) : null;
+        Future<DashboardResponseDto.ProjectStats> projectStats = submitSection(() -> getProjectStats(caller));
+        Future<DashboardResponseDto.WorkLogStats> workLogStats = submitSection(() -> getWorkLogStats(caller));
+        Future<List<ProjectResponseDto>> recentProjects = submitSection(() -> getRecentProjects(caller));
+        Future<List<WorkLogResponseDto>> recentWorkLogs = submitSection(() -> getRecentWorkLogs(caller));
         
-        // Get unread notification count
-        dashboard.setUnreadNotificationCount(notificationRepository.countUnreadNotificationsByUserId(currentUser.getId()));
+        DashboardResponseDto dashboard = new DashboardResponseDto();
+        List<String> degradedSections = new ArrayList<>();
+        if (userStats != null) {
+            dashboard.setUserStats(awaitSection("userStats", userStats, deadline, degradedSections));
+        }
+        dashboard.setProjectStats(awaitSection("projectStats", projectStats, deadline, degradedSections));
+        dashboard.setWorkLogStats(awaitSection("workLogStats", workLogStats, deadline, degradedSections));
+        dashboard.setRecentProjects(awaitSection("recentProjects", recentProjects, deadline, degradedSections));
+        dashboard.setRecentWorkLogs(awaitSection("recentWorkLogs", recentWorkLogs, deadline, degradedSections));
+        dashboard.setDegradedSections(degradedSections);
         
         return dashboard;
     }
     
+    private <T> Future<T> submitSection(Supplier<T> section) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        try {
+            return sectionExecutor.submit(() -> transactionTemplate.execute(status -> section.get()));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private <T> T awaitSection(String name, Future<T> section, long deadline, List<String> degradedSections) {
+        try {
+            return section.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            section.cancel(true);
+            logger.warn("Dashboard section {} timed out", name);
+        } catch (ExecutionException e) {
+            logger.warn("Dashboard section {} failed", name, e.getCause());
+        } catch (InterruptedException e) {
+            section.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        degradedSections.add(name);
+        return null;
+    }
+    
+    private static ExecutorService newSectionExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(SECTION_THREADS, SECTION_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(SECTION_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        // Sections run with the security context of the request that submitted them
+        return new DelegatingSecurityContextExecutorService(executor);
+    }
+    
+    @PreDestroy
+    void shutdownSectionExecutor() {
+        sectionExecutor.shutdownNow();
+    }
+    
     private DashboardResponseDto.UserStats getUserStats() {
         DashboardResponseDto.UserStats userStats = new DashboardResponseDto.UserStats();
         
-        userStats.setTotalUsers(userRepository.count());
-        userStats.setActiveUsers(userRepository.countByIsActive(true));
-        userStats.setAdminUsers(userRepository.countByRole(User.Role.admin));
-        userStats.setPmUsers(userRepository.countByRole(User.Role.pm));
-        userStats.setDevUsers(userRepository.countByRole(User.Role.dev));
-        userStats.setBaUsers(userRepository.countByRole(User.Role.ba));
-        userStats.setTestUsers(userRepository.countByRole(User.Role.test));
+        // [role][0] inactive, [role][1] active
+        long[][] counts = new long[User.Role.values().length][2];
+        for (Object[] row : userRepository.countByRoleAndIsActive()) {
+            counts[((User.Role) row[0]).ordinal()][Boolean.TRUE.equals(row[1]) ? 1 : 0] += (Long) row[2];
+        }
+        
+        long totalUsers = 0;
+        long activeUsers = 0;
+        for (long[] roleCounts : counts) {
+            totalUsers += roleCounts[0] + roleCounts[1];
+            activeUsers += roleCounts[1];
+        }
+        userStats.setTotalUsers(totalUsers);
+        userStats.setActiveUsers(activeUsers);
+        userStats.setAdminUsers(countForRole(counts, User.Role.admin));
+        userStats.setPmUsers(countForRole(counts, User.Role.pm));
+        userStats.setDevUsers(countForRole(counts, User.Role.dev));
+        userStats.setBaUsers(countForRole(counts, User.Role.ba));
+        userStats.setTestUsers(countForRole(counts, User.Role.test));
         
         return userStats;
     }
     
-    private DashboardResponseDto.ProjectStats getProjectStats(User currentUser) {
+    private static long countForRole(long[][] counts, User.Role role) {
+        return counts[role.ordinal()][0] + counts[role.ordinal()][1];
+    }
+    
+    private DashboardResponseDto.ProjectStats getProjectStats(Caller caller) {
         DashboardResponseDto.ProjectStats projectStats = new DashboardResponseDto.ProjectStats();
         
-        List<Project> userProjects = getUserAccessibleProjects(currentUser);
+        Project.Status[] statuses = Project.Status.values();
+        Project.ProjectType[] types = Project.ProjectType.values();
+        long[] byStatus = new long[statuses.length];
+        long[] byType = new long[types.length];
+        long totalProjects = 0;
+        for (Object[] row : countAccessibleProjectsByStatusAndType(caller)) {
+            long count = (Long) row[2];
+            totalProjects += count;
+            if (row[0] != null) {
+                byStatus[((Project.Status) row[0]).ordinal()] += count;
+            }
+            if (row[1] != null) {
+                byType[((Project.ProjectType) row[1]).ordinal()] += count;
+            }
+        }
         
-        projectStats.setTotalProjects(userProjects.size());
-        projectStats.setActiveProjects(userProjects.stream()
-                .filter(p -> p.getStatus() == Project.Status.InProgress)
-                .count());
-        projectStats.setClosedProjects(userProjects.stream()
-                .filter(p -> p.getStatus() == Project.Status.Closed)
-                .count());
-        projectStats.setOnHoldProjects(userProjects.stream()
-                .filter(p -> p.getStatus() == Project.Status.Hold)
-                .count());
+        projectStats.setTotalProjects(totalProjects);
+        projectStats.setActiveProjects(byStatus[Project.Status.InProgress.ordinal()]);
+        projectStats.setClosedProjects(byStatus[Project.Status.Closed.ordinal()]);
+        projectStats.setOnHoldProjects(byStatus[Project.Status.Hold.ordinal()]);
         
-        // Projects by type
         Map<String, Long> projectsByType = new HashMap<>();
-        for (Project.ProjectType type : Project.ProjectType.values()) {
-            long count = userProjects.stream()
-                    .filter(p -> p.getProjectType() == type)
-                    .count();
-            projectsByType.put(type.name(), count);
+        for (Project.ProjectType type : types) {
+            projectsByType.put(type.name(), byType[type.ordinal()]);
         }
         projectStats.setProjectsByType(projectsByType);
         
-        // Projects by status
         Map<String, Long> projectsByStatus = new HashMap<>();
-        for (Project.Status status : Project.Status.values()) {
-            long count = userProjects.stream()
-                    .filter(p -> p.getStatus() == status)
-                    .count();
-            projectsByStatus.put(status.name(), count);
+        for (Project.Status status : statuses) {
+            projectsByStatus.put(status.name(), byStatus[status.ordinal()]);
         }
         projectStats.setProjectsByStatus(projectsByStatus);
         
         return projectStats;
     }
     
-    private DashboardResponseDto.WorkLogStats getWorkLogStats(User currentUser) {
+    private DashboardResponseDto.WorkLogStats getWorkLogStats(Caller caller) {
         DashboardResponseDto.WorkLogStats workLogStats = new DashboardResponseDto.WorkLogStats();
         
         LocalDate now = LocalDate.now();
         LocalDate startOfMonth = now.withDayOfMonth(1);
         LocalDate startOfLastMonth = startOfMonth.minusMonths(1);
-        LocalDate endOfLastMonth = startOfMonth.minusDays(1);
         
-        List<WorkLog> userWorkLogs = getUserAccessibleWorkLogs(currentUser);
+        // Aggregates come from the monthly rollups, scoped like the accessible work logs
+        Long scopeUserId = null;
+        String scopePmEmail = null;
+        switch (caller.role()) {
+            case admin:
+                break;
+            case pm:
+                scopePmEmail = caller.email();
+                break;
+            case dev:
+            case ba:
+            case test:
+                scopeUserId = caller.userId();
+                break;
+            default:
+                workLogStats.setTotalHoursThisMonth(BigDecimal.ZERO);
+                workLogStats.setTotalHoursLastMonth(BigDecimal.ZERO);
+                workLogStats.setAverageHoursPerDay(BigDecimal.ZERO);
+                workLogStats.setHoursByProject(new HashMap<>());
+                return workLogStats;
+        }
+        
+        Map<LocalDate, BigDecimal> hoursByMonth = new HashMap<>();
+        for (Object[] row : workLogMonthlyRollupRepository.sumHoursByMonth(
+                List.of(startOfMonth, startOfLastMonth), scopeUserId, scopePmEmail)) {
+            hoursByMonth.put((LocalDate) row[0], (BigDecimal) row[1]);
+        }
         
         // Total hours this month
-        BigDecimal thisMonthHours = userWorkLogs.stream()
-                .filter(wl -> !wl.getWorkDate().isBefore(startOfMonth))
-                .map(WorkLog::getHoursWorked)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal thisMonthHours = hoursByMonth.getOrDefault(startOfMonth, BigDecimal.ZERO);
         workLogStats.setTotalHoursThisMonth(thisMonthHours);
         
         // Total hours last month
-        BigDecimal lastMonthHours = userWorkLogs.stream()
-                .filter(wl -> !wl.getWorkDate().isBefore(startOfLastMonth) && !wl.getWorkDate().isAfter(endOfLastMonth))
-                .map(WorkLog::getHoursWorked)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        workLogStats.setTotalHoursLastMonth(lastMonthHours);
+        workLogStats.setTotalHoursLastMonth(hoursByMonth.getOrDefault(startOfLastMonth, BigDecimal.ZERO));
         
         // Average hours per day (this month)
         long daysInMonth = now.getDayOfMonth();
@@ -151,21 +291,21 @@ public class DashboardService {
                 thisMonthHours.divide(BigDecimal.valueOf(daysInMonth), 2, BigDecimal.ROUND_HALF_UP) : BigDecimal.ZERO;
         workLogStats.setAverageHoursPerDay(averageHours);
         
-        workLogStats.setTotalWorkLogs(userWorkLogs.size());
-        
-        // Hours by project
-        Map<String, BigDecimal> hoursByProject = userWorkLogs.stream()
-                .collect(Collectors.groupingBy(
-                        wl -> wl.getProject().getProjectName(),
-                        Collectors.reducing(BigDecimal.ZERO, WorkLog::getHoursWorked, BigDecimal::add)
-                ));
+        // Hours by project and total entry count
+        Map<String, BigDecimal> hoursByProject = new HashMap<>();
+        long totalWorkLogs = 0;
+        for (Object[] row : workLogMonthlyRollupRepository.sumByProject(scopeUserId, scopePmEmail)) {
+            hoursByProject.merge((String) row[0], (BigDecimal) row[1], BigDecimal::add);
+            totalWorkLogs += ((Number) row[2]).longValue();
+        }
+        workLogStats.setTotalWorkLogs(totalWorkLogs);
         workLogStats.setHoursByProject(hoursByProject);
         
         return workLogStats;
     }
     
-    private List<ProjectResponseDto> getRecentProjects(User currentUser) {
-        List<Project> recentProjects = getUserAccessibleProjects(currentUser).stream()
+    private List<ProjectResponseDto> getRecentProjects(Caller caller) {
+        List<Project> recentProjects = getUserAccessibleProjects(caller).stream()
                 .sorted((p1, p2) -> p2.getCreatedAt().compareTo(p1.getCreatedAt()))
                 .limit(5)
                 .collect(Collectors.toList());
@@ -175,44 +315,58 @@ public class DashboardService {
                 .collect(Collectors.toList());
     }
     
-    private List<WorkLogResponseDto> getRecentWorkLogs(User currentUser) {
-        List<WorkLog> recentWorkLogs = getUserAccessibleWorkLogs(currentUser).stream()
-                .sorted((wl1, wl2) -> wl2.getCreatedAt().compareTo(wl1.getCreatedAt()))
-                .limit(10)
-                .collect(Collectors.toList());
-        
-        return recentWorkLogs.stream()
+    private List<WorkLogResponseDto> getRecentWorkLogs(Caller caller) {
+        return getRecentAccessibleWorkLogs(caller).stream()
                 .map(workLogMapper::toResponseDto)
                 .collect(Collectors.toList());
     }
     
-    private List<Project> getUserAccessibleProjects(User currentUser) {
-        switch (currentUser.getRole()) {
+    private List<Object[]> countAccessibleProjectsByStatusAndType(Caller caller) {
+        switch (caller.role()) {
+            case admin:
+                return projectRepository.countByStatusAndType();
+            case pm:
+                return projectRepository.countByStatusAndTypeForPm(caller.email());
+            case dev:
+            case ba:
+            case test:
+                return projectRepository.countByStatusAndTypeForMember(caller.userId());
+            default:
+                return List.of();
+        }
+    }
+    
+    private List<Project> getUserAccessibleProjects(Caller caller) {
+        switch (caller.role()) {
             case admin:
                 return projectRepository.findAll();
             case pm:
-                return projectRepository.findByPmEmail(currentUser.getEmail());
+                return projectRepository.findByPmEmail(caller.email());
             case dev:
             case ba:
             case test:
-                return projectRepository.findProjectsByUserId(currentUser.getId());
+                return projectRepository.findProjectsByUserId(caller.userId());
             default:
                 return List.of();
         }
     }
     
-    private List<WorkLog> getUserAccessibleWorkLogs(User currentUser) {
-        switch (currentUser.getRole()) {
+    private List<WorkLog> getRecentAccessibleWorkLogs(Caller caller) {
+        Limit limit = Limit.of(RECENT_WORK_LOGS);
+        switch (caller.role()) {
             case admin:
-                return workLogRepository.findAll();
+                return workLogRepository.findRecentWithDetails(limit);
             case pm:
-                return workLogRepository.findWorkLogsByPmEmail(currentUser.getEmail());
+                return workLogRepository.findRecentByPmEmailWithDetails(caller.email(), limit);
             case dev:
             case ba:
             case test:
-                return workLogRepository.findByUserId(currentUser.getId());
+                return workLogRepository.findRecentByUserIdWithDetails(caller.userId(), limit);
             default:
                 return List.of();
         }
     }
+    
+    private record Caller(User.Role role, Long userId, String email) {
+    }
 }
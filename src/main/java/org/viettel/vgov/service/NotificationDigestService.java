@@ -0,0 +1,65 @@
+package org.viettel.vgov.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.repository.NotificationDigestEntryRepository;
+import org.viettel.vgov.repository.UserRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers the daily digest: the project updates held back for users who opted into it are summarized
+ * into one notification per user, with the number of updates and the latest message of each project,
+ * and then discarded.
+ */
+@Service
+@Transactional
+public class NotificationDigestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDigestService.class);
+
+    private static final long DIGEST_LOCK_KEY = 0x4E4F54494447L;
+
+    private final NotificationDigestEntryRepository digestEntryRepository;
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+
+    public NotificationDigestService(NotificationDigestEntryRepository digestEntryRepository,
+                                     UserRepository userRepository,
+                                     NotificationService notificationService) {
+        this.digestEntryRepository = digestEntryRepository;
+        this.userRepository = userRepository;
+        this.notificationService = notificationService;
+    }
+
+    @Scheduled(cron = "${vgov.notifications.digest.cron}")
+    public void sendDigests() {
+        digestEntryRepository.lockForDigest(DIGEST_LOCK_KEY);
+        // Entries committed after the statement started wait for the next digest
+        List<Object[]> rows = digestEntryRepository.takeSummaries();
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Map<Long, StringBuilder> digests = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            Long userId = ((Number) row[0]).longValue();
+            String projectName = row[2] != null ? (String) row[2] : "Dự án đã xóa";
+            long count = ((Number) row[3]).longValue();
+            StringBuilder digest = digests.computeIfAbsent(userId, id -> new StringBuilder());
+            if (!digest.isEmpty()) {
+                digest.append('\n');
+            }
+            digest.append(String.format("Dự án %s: %d cập nhật, mới nhất: %s", projectName, count, row[4]));
+        }
+
+        digests.forEach((userId, digest) -> notificationService.createDigestNotification(
+                userRepository.getReferenceById(userId), digest.toString()));
+        logger.info("Sent the daily notification digest to {} users", digests.size());
+    }
+}
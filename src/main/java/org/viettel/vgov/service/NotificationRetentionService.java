@@ -0,0 +1,76 @@
+package org.viettel.vgov.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.repository.NotificationRepository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Maintains the monthly partitions of the notifications table: creates those of the current and next
+ * months ahead of time, and drops (or, when archiving, detaches) those older than the retention period
+ * together with expired rows of the default partition. Notifications are thus purged whole months at a
+ * time, without deleting rows one by one.
+ */
+@Service
+@Transactional
+public class NotificationRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRetentionService.class);
+
+    private static final long PARTITION_LOCK_KEY = 0x4E4F54494650L;
+
+    private final NotificationRepository notificationRepository;
+    private final UnreadNotificationCountService unreadNotificationCountService;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean archive;
+
+    public NotificationRetentionService(NotificationRepository notificationRepository,
+                                        UnreadNotificationCountService unreadNotificationCountService,
+                                        @Value("${vgov.notifications.partitions.months-ahead}") int monthsAhead,
+                                        @Value("${vgov.notifications.retention.months}") int retentionMonths,
+                                        @Value("${vgov.notifications.retention.archive}") boolean archive) {
+        if (retentionMonths < 1) {
+            throw new IllegalArgumentException("Notification retention must be at least one month");
+        }
+        this.notificationRepository = notificationRepository;
+        this.unreadNotificationCountService = unreadNotificationCountService;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archive = archive;
+    }
+
+    @Scheduled(fixedDelayString = "${vgov.notifications.partitions.maintenance-interval}")
+    public void maintainPartitions() {
+        notificationRepository.lockForPartitionMaintenance(PARTITION_LOCK_KEY);
+        List<YearMonth> existing = notificationRepository.findPartitionMonths();
+        YearMonth current = YearMonth.now();
+
+        for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            if (!existing.contains(month)) {
+                notificationRepository.createPartition(month);
+                logger.info("Created notification partition for {}", month);
+            }
+        }
+
+        // Notifications created before the first retained month are purged
+        YearMonth firstRetained = current.minusMonths(retentionMonths - 1);
+        unreadNotificationCountService.recordPurgedBefore(firstRetained.atDay(1).atStartOfDay());
+        for (YearMonth month : existing) {
+            if (month.isBefore(firstRetained)) {
+                notificationRepository.removePartition(month, archive);
+                logger.info("{} notification partition for {}", archive ? "Detached" : "Dropped", month);
+            }
+        }
+        int purged = notificationRepository.deleteFromDefaultPartitionBefore(firstRetained);
+        if (purged > 0) {
+            logger.info("Purged {} notifications created before {} from the default partition", purged, firstRetained);
+        }
+    }
+}
@@ -1,35 +1,65 @@
 package org.viettel.vgov.service;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.viettel.vgov.dto.response.NotificationResponseDto;
+import org.viettel.vgov.dto.response.PageCursor;
+import org.viettel.vgov.dto.response.PagedResponse;
+import org.viettel.vgov.event.NotificationsChangedEvent;
 import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.NotificationMapper;
 import org.viettel.vgov.model.Notification;
 import org.viettel.vgov.model.Project;
-import org.viettel.vgov.model.ProjectMember;
+import org.viettel.vgov.model.ProjectNotificationEvent;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.repository.NotificationRepository;
-import org.viettel.vgov.repository.ProjectMemberRepository;
+import org.viettel.vgov.repository.ProjectNotificationEventRepository;
+import org.viettel.vgov.repository.UserRepository;
 import org.viettel.vgov.security.UserPrincipal;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
-@RequiredArgsConstructor
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final ProjectMemberRepository projectMemberRepository;
+    private final ProjectNotificationEventRepository projectNotificationEventRepository;
+    private final UserRepository userRepository;
     private final NotificationMapper notificationMapper;
+    private final NotificationStreamService notificationStreamService;
+    private final UnreadNotificationCountService unreadNotificationCountService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration coalescingWindow;
+
+    public NotificationService(NotificationRepository notificationRepository,
+                               ProjectNotificationEventRepository projectNotificationEventRepository,
+                               UserRepository userRepository,
+                               NotificationMapper notificationMapper,
+                               NotificationStreamService notificationStreamService,
+                               UnreadNotificationCountService unreadNotificationCountService,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${vgov.notifications.coalescing.window}") Duration coalescingWindow) {
+        this.notificationRepository = notificationRepository;
+        this.projectNotificationEventRepository = projectNotificationEventRepository;
+        this.userRepository = userRepository;
+        this.notificationMapper = notificationMapper;
+        this.notificationStreamService = notificationStreamService;
+        this.unreadNotificationCountService = unreadNotificationCountService;
+        this.eventPublisher = eventPublisher;
+        this.coalescingWindow = coalescingWindow;
+    }
 
     public Page<NotificationResponseDto> getCurrentUserNotifications(Pageable pageable, Boolean isRead, String notificationType) {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
@@ -38,6 +68,35 @@ public class NotificationService {
         return notifications.map(notificationMapper::toResponseDto);
     }
 
+    public PagedResponse<NotificationResponseDto> getCurrentUserNotificationsAfter(String after, Integer limit,
+                                                                             Boolean isRead, String notificationType) {
+        UserPrincipal userPrincipal = getCurrentUserPrincipal();
+        int pageSize = PageCursor.resolveLimit(limit);
+        
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (after != null && !after.isEmpty()) {
+            PageCursor cursor = PageCursor.decode(after);
+            afterCreatedAt = cursor.parseKey(LocalDateTime::parse);
+            afterId = cursor.getId();
+        }
+        
+        // Fetch one extra row to know whether another page exists
+        List<Notification> notifications = notificationRepository.findByUserIdWithFiltersAfter(
+                userPrincipal.getId(), isRead, notificationType, afterCreatedAt, afterId, Limit.of(pageSize + 1));
+        
+        String nextCursor = null;
+        if (notifications.size() > pageSize) {
+            notifications = notifications.subList(0, pageSize);
+            Notification last = notifications.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt().toString(), last.getId()).encode();
+        }
+        
+        return PagedResponse.ofCursor(notifications.stream()
+                .map(notificationMapper::toResponseDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
     public List<NotificationResponseDto> getAllCurrentUserNotifications() {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
         List<Notification> notifications = notificationRepository.findByUserIdOrderByCreatedAtDesc(userPrincipal.getId());
@@ -56,40 +115,91 @@ public class NotificationService {
 
     public long getUnreadCount() {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
-        return notificationRepository.countUnreadNotificationsByUserId(userPrincipal.getId());
+        return unreadNotificationCountService.getUnreadCount(userPrincipal.getId());
     }
 
-    public void markAsRead(Long notificationId) {
+    @Transactional(readOnly = true)
+    public SseEmitter streamCurrentUserNotifications(Long lastEventId) {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new ResourceNotFoundException("Notification not found with id: " + notificationId));
+        return notificationStreamService.connect(userPrincipal.getId(), lastEventId);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isDailyDigestEnabled() {
+        UserPrincipal userPrincipal = getCurrentUserPrincipal();
+        return userRepository.findNotificationDigestById(userPrincipal.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userPrincipal.getId()));
+    }
 
-        if (!notification.getUser().getId().equals(userPrincipal.getId())) {
+    /**
+     * With the daily digest, project updates are collected and summarized once a day by NotificationDigestService;
+     * notifications addressed to the user alone are still delivered immediately.
+     */
+    public void setDailyDigestEnabled(boolean dailyDigest) {
+        UserPrincipal userPrincipal = getCurrentUserPrincipal();
+        userRepository.updateNotificationDigest(userPrincipal.getId(), dailyDigest);
+    }
+
+    public void markAsRead(Long notificationId) {
+        UserPrincipal userPrincipal = getCurrentUserPrincipal();
+        int marked = notificationRepository.markAsReadForUser(notificationId, userPrincipal.getId());
+        if (marked == 0 && !notificationRepository.existsByIdAndUserId(notificationId, userPrincipal.getId())) {
             throw new ResourceNotFoundException("Notification not found for current user with id: " + notificationId);
         }
 
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
+        if (marked > 0) {
+            unreadNotificationCountService.recordRead(userPrincipal.getId(), marked);
+            eventPublisher.publishEvent(NotificationsChangedEvent.ofUser(userPrincipal.getId()));
+        }
     }
 
     public void markAllAsRead() {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
-        notificationRepository.markAllAsReadForUser(userPrincipal.getId());
+        int marked = notificationRepository.markAllAsReadForUser(userPrincipal.getId());
+        unreadNotificationCountService.recordRead(userPrincipal.getId(), marked);
+        eventPublisher.publishEvent(NotificationsChangedEvent.ofUser(userPrincipal.getId()));
     }
 
     public void deleteNotification(Long notificationId) {
         UserPrincipal userPrincipal = getCurrentUserPrincipal();
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new ResourceNotFoundException("Notification not found with id: " + notificationId));
-
-        if (!notification.getUser().getId().equals(userPrincipal.getId())) {
+        List<Boolean> deleted = notificationRepository.deleteForUser(notificationId, userPrincipal.getId());
+        if (deleted.isEmpty()) {
             throw new ResourceNotFoundException("Notification not found for current user with id: " + notificationId);
         }
 
-        notificationRepository.delete(notification);
+        if (!deleted.get(0)) {
+            unreadNotificationCountService.recordRead(userPrincipal.getId(), 1);
+            eventPublisher.publishEvent(NotificationsChangedEvent.ofUser(userPrincipal.getId()));
+        }
     }
 
+    /**
+     * Notifies the user, merging the notification into an unread one of the same type about the same
+     * project created within the coalescing window, if there is one.
+     */
     public void createNotification(User user, String title, String message, String notificationType, Project relatedProject, User relatedUser) {
+        if (!coalescingWindow.isNegative() && !coalescingWindow.isZero()) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> coalesced = notificationRepository.coalesce(user.getId(), notificationType,
+                    relatedProject != null ? relatedProject.getId() : null, title, message,
+                    relatedUser != null ? relatedUser.getId() : null, now, now.minus(coalescingWindow));
+            if (!coalesced.isEmpty()) {
+                eventPublisher.publishEvent(NotificationsChangedEvent.ofUpdated(
+                        notificationRepository.findByIdInWithRelations(coalesced)));
+                return;
+            }
+        }
+        saveNotification(user, title, message, notificationType, relatedProject, relatedUser);
+    }
+
+    /**
+     * Delivers a daily digest; digests are never coalesced, each summarizes its own day.
+     */
+    public void createDigestNotification(User user, String summary) {
+        saveNotification(user, "Tóm tắt thông báo hằng ngày", summary, "digest", null, null);
+    }
+
+    private void saveNotification(User user, String title, String message, String notificationType, Project relatedProject, User relatedUser) {
         Notification notification = new Notification();
         notification.setUser(user);
         notification.setTitle(title);
@@ -100,31 +210,45 @@ public class NotificationService {
         notification.setIsRead(false);
 
         notificationRepository.save(notification);
+        unreadNotificationCountService.recordCreated(List.of(notification));
+        eventPublisher.publishEvent(NotificationsChangedEvent.ofCreated(List.of(notification)));
     }
 
+    /**
+     * Notifies every active member of the project except the originator. The notifications are written
+     * to the outbox in the caller's transaction and inserted by ProjectNotificationDispatcher after it commits.
+     */
     public void createProjectNotification(Project project, String title, String message, String notificationType, User originatorUser) {
-        List<ProjectMember> activeMembers = projectMemberRepository.findByProjectIdAndIsActiveTrue(project.getId());
-        List<Notification> notificationsToSave = new ArrayList<>();
+        ProjectNotificationEvent event = new ProjectNotificationEvent();
+        event.setProjectId(project.getId());
+        event.setActorUserId(originatorUser != null ? originatorUser.getId() : null);
+        event.setTitle(title);
+        event.setMessage(message);
+        event.setNotificationType(notificationType);
+        event.setNextAttemptAt(LocalDateTime.now());
+        projectNotificationEventRepository.save(event);
+    }
 
-        for (ProjectMember member : activeMembers) {
-            if (originatorUser != null && member.getUser().getId().equals(originatorUser.getId())) {
-                continue;
-            }
+    /**
+     * Deletes the notifications about a project with a single statement; called before the project is deleted.
+     */
+    public void deleteProjectNotifications(Long projectId) {
+        unreadNotificationCountService.recordProjectDeleted(projectId);
+        notificationRepository.deleteByRelatedProjectId(projectId);
+    }
 
-            Notification notification = new Notification();
-            notification.setUser(member.getUser());
-            notification.setTitle(title);
-            notification.setMessage(message);
-            notification.setNotificationType(notificationType);
-            notification.setRelatedProject(project);
-            notification.setRelatedUser(originatorUser);
-            notification.setIsRead(false);
-            notificationsToSave.add(notification);
-        }
+    public void notifyProjectStatusChanged(Project project, Project.Status oldStatus, User changedBy) {
+        String title = "Trạng thái dự án đã thay đổi";
+        String message = String.format("%s đã chuyển dự án %s từ trạng thái %s sang %s.",
+                changedBy.getFullName(), project.getProjectName(), oldStatus, project.getStatus());
+        createProjectNotification(project, title, message, "project", changedBy);
+    }
 
-        if (!notificationsToSave.isEmpty()) {
-            notificationRepository.saveAll(notificationsToSave);
-        }
+    public void notifyMemberRemovedFromProject(Project project, User removedUser, User removedBy) {
+        String title = "Thành viên đã rời dự án";
+        String message = String.format("%s đã được %s xóa khỏi dự án %s.",
+                removedUser.getFullName(), removedBy.getFullName(), project.getProjectName());
+        createProjectNotification(project, title, message, "project", removedBy);
     }
 
     public void notifyUserAddedToProject(Project project, User newUser, User addedBy) {
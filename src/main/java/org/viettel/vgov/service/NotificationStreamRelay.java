@@ -0,0 +1,181 @@
+package org.viettel.vgov.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.viettel.vgov.event.NotificationsChangedEvent;
+import org.viettel.vgov.model.Notification;
+import org.viettel.vgov.repository.NotificationRepository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries notification changes to the stream connections of every instance. The writing transaction
+ * sends them with pg_notify, which Postgres delivers to all listeners only once it commits, and each
+ * instance listens on a dedicated connection and hands the changes concerning its own connections to
+ * NotificationStreamService. Messages sent while an instance's listener was disconnected are lost, so
+ * its connections are told to reload once it is back.
+ */
+@Service
+public class NotificationStreamRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationStreamRelay.class);
+
+    private static final String CHANNEL = "vgov_notifications";
+
+    // Keeps each message well below the 8000 byte payload limit of pg_notify
+    private static final int MAX_ENTRIES_PER_MESSAGE = 250;
+
+    private static final int POLL_TIMEOUT_MS = 10_000;
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationStreamService notificationStreamService;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private volatile boolean running;
+    private volatile Connection listenConnection;
+    private Thread listenerThread;
+
+    public NotificationStreamRelay(NotificationRepository notificationRepository,
+                                   NotificationStreamService notificationStreamService,
+                                   DataSourceProperties dataSourceProperties,
+                                   ObjectMapper objectMapper) {
+        this.notificationRepository = notificationRepository;
+        this.notificationStreamService = notificationStreamService;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Created and updated notifications as [userId, notificationId] pairs, and the users whose unread
+     * count may have changed.
+     */
+    record Message(List<long[]> created, List<long[]> updated, List<Long> users) {
+    }
+
+    @EventListener
+    public void onNotificationsChanged(NotificationsChangedEvent event) {
+        List<long[]> created = pairs(event.created());
+        List<long[]> updated = pairs(event.updated());
+        List<Long> users = new ArrayList<>(event.userIds());
+        int total = created.size() + updated.size() + users.size();
+        for (int offset = 0; offset < total; offset += MAX_ENTRIES_PER_MESSAGE) {
+            int end = Math.min(total, offset + MAX_ENTRIES_PER_MESSAGE);
+            Message message = new Message(
+                    slice(created, offset, end),
+                    slice(updated, offset - created.size(), end - created.size()),
+                    slice(users, offset - created.size() - updated.size(), end - created.size() - updated.size()));
+            try {
+                notificationRepository.notifyChannel(CHANNEL, objectMapper.writeValueAsString(message));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Serializing a notification stream message failed", e);
+            }
+        }
+    }
+
+    private static List<long[]> pairs(List<Notification> notifications) {
+        return notifications.stream()
+                .map(notification -> new long[]{notification.getUser().getId(), notification.getId()})
+                .toList();
+    }
+
+    // The entries of a list that fall in [from, to) of the concatenated lists, given offsets relative to it
+    private static <T> List<T> slice(List<T> list, int from, int to) {
+        return list.subList(Math.max(0, Math.min(list.size(), from)), Math.max(0, Math.min(list.size(), to)));
+    }
+
+    @PostConstruct
+    void startListening() {
+        running = true;
+        listenerThread = new Thread(this::listen, "notification-relay");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stopListening() {
+        running = false;
+        listenerThread.interrupt();
+        Connection connection = listenConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                listenConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnecting) {
+                    logger.info("Notification relay reconnected");
+                    notificationStreamService.resyncAll();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Notification relay lost its connection, reconnecting in {} ms", RECONNECT_DELAY_MS, e);
+            }
+            reconnecting = true;
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        try {
+            Message message = objectMapper.readValue(payload, Message.class);
+            // Only the changes of users connected to this instance are loaded
+            List<Long> createdIds = localIds(message.created());
+            List<Long> updatedIds = localIds(message.updated());
+            List<Long> users = message.users().stream().filter(notificationStreamService::hasConnections).toList();
+            if (!createdIds.isEmpty() || !updatedIds.isEmpty() || !users.isEmpty()) {
+                notificationStreamService.deliver(createdIds, updatedIds, users);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Delivering a notification stream message failed", e);
+        }
+    }
+
+    private List<Long> localIds(List<long[]> pairs) {
+        return pairs.stream()
+                .filter(pair -> notificationStreamService.hasConnections(pair[0]))
+                .map(pair -> pair[1])
+                .toList();
+    }
+}
@@ -0,0 +1,428 @@
+package org.viettel.vgov.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.viettel.vgov.dto.response.NotificationResponseDto;
+import org.viettel.vgov.mapper.NotificationMapper;
+import org.viettel.vgov.model.Notification;
+import org.viettel.vgov.repository.NotificationRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes new notifications and unread counts to the clients connected to this instance as server-sent
+ * events; NotificationStreamRelay delivers the committed changes of every instance. Every connection has
+ * a bounded queue, drained on a bounded pool only while it has something to send, so a slow client holds
+ * up at most one of the pool's threads. A client that falls further behind than the queue capacity, does
+ * not take a single event within the send timeout, or cannot get a drain queued on the pool, is
+ * disconnected and resumes from the last notification it received; the write it is stuck in is ended by
+ * the container's write timeout. Heartbeats only go to connections that sent nothing for the heartbeat
+ * interval, each on its own schedule, instead of to every connection at once. Unread counts are not
+ * queued: a change marks the count stale and the drain reads it once. A notification that absorbed a
+ * repeated update is sent again as {@code notification-updated}, without an event id, as it does not
+ * move the resume position.
+ * <p>
+ * Notifications do not necessarily commit in id or creation order, so a resuming client is sent every
+ * notification created since shortly before the one it resumes from, and de-duplicates by id.
+ */
+@Service
+public class NotificationStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationStreamService.class);
+
+    // Notifications replayed on reconnect; clients that missed more are told to reload instead
+    private static final int MAX_REPLAY = 100;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationMapper notificationMapper;
+    private final UnreadNotificationCountService unreadNotificationCountService;
+    private final Duration timeout;
+    private final Duration resumeOverlap;
+    private final int queueCapacity;
+    private final long heartbeatNanos;
+    private final long sendTimeoutNanos;
+    private final Map<Long, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final ExecutorService drainExecutor;
+    private final ScheduledExecutorService scheduler = newScheduler();
+
+    public NotificationStreamService(NotificationRepository notificationRepository,
+                                     NotificationMapper notificationMapper,
+                                     UnreadNotificationCountService unreadNotificationCountService,
+                                     @Value("${vgov.notifications.stream.timeout}") Duration timeout,
+                                     @Value("${vgov.notifications.stream.heartbeat}") Duration heartbeat,
+                                     @Value("${vgov.notifications.stream.resume-overlap}") Duration resumeOverlap,
+                                     @Value("${vgov.notifications.stream.queue-capacity}") int queueCapacity,
+                                     @Value("${vgov.notifications.stream.send-timeout}") Duration sendTimeout,
+                                     @Value("${vgov.notifications.stream.drain-threads}") int drainThreads,
+                                     @Value("${vgov.notifications.stream.drain-queue-capacity}") int drainQueueCapacity) {
+        this.notificationRepository = notificationRepository;
+        this.notificationMapper = notificationMapper;
+        this.unreadNotificationCountService = unreadNotificationCountService;
+        this.timeout = timeout;
+        this.resumeOverlap = resumeOverlap;
+        this.queueCapacity = queueCapacity;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.drainExecutor = newDrainExecutor(drainThreads, drainQueueCapacity);
+        // Checked ten times per interval, so a connection's heartbeat is at most a tenth of the interval late
+        long heartbeatCheckMillis = Math.max(1, heartbeat.toMillis() / 10);
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatCheckMillis, heartbeatCheckMillis, TimeUnit.MILLISECONDS);
+        // Checked twice per timeout, so a stalled send is noticed at most one and a half timeouts late
+        long stallCheckMillis = Math.max(1, sendTimeout.toMillis() / 2);
+        scheduler.scheduleAtFixedRate(this::disconnectStalled, stallCheckMillis, stallCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a stream for the user. With a last event id, the notifications created since shortly before
+     * it are sent first; the current unread count follows them.
+     */
+    public SseEmitter connect(Long userId, Long lastEventId) {
+        SseEmitter emitter = newEmitter(timeout.toMillis());
+        Connection connection = new Connection(userId, emitter);
+        emitter.onCompletion(() -> unregister(connection));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unregister(connection));
+
+        // Registered before the replay query, so nothing committed in between is missed
+        connections.compute(userId, (id, userConnections) -> {
+            Set<Connection> result = userConnections != null ? userConnections : ConcurrentHashMap.newKeySet();
+            result.add(connection);
+            return result;
+        });
+
+        List<NotificationResponseDto> missed = List.of();
+        boolean resync = false;
+        if (lastEventId != null) {
+            Optional<LocalDateTime> lastCreatedAt = notificationRepository.findCreatedAtByIdAndUserId(lastEventId, userId);
+            // A notification deleted since leaves no position to resume from
+            List<Notification> notifications = lastCreatedAt.isEmpty() ? List.of()
+                    : notificationRepository.findByUserIdCreatedSince(userId, lastCreatedAt.get().minus(resumeOverlap),
+                            Limit.of(MAX_REPLAY + 2));
+            notifications = notifications.stream()
+                    .filter(notification -> !notification.getId().equals(lastEventId))
+                    .collect(Collectors.toList());
+            if (lastCreatedAt.isEmpty() || notifications.size() > MAX_REPLAY) {
+                resync = true;
+            } else {
+                missed = notifications.stream().map(notificationMapper::toResponseDto).collect(Collectors.toList());
+            }
+        }
+        connection.start(missed, resync);
+        return emitter;
+    }
+
+    // Overridden by tests to stand in for clients
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    public boolean hasConnections(Long userId) {
+        return connections.containsKey(userId);
+    }
+
+    /**
+     * Pushes committed changes to this instance's connections: the given notifications, loaded now, and
+     * the unread counts of the given users.
+     */
+    @Transactional(readOnly = true)
+    public void deliver(Collection<Long> createdIds, Collection<Long> updatedIds, Collection<Long> countUserIds) {
+        Set<Long> updated = new HashSet<>(updatedIds);
+        List<Long> ids = new ArrayList<>(createdIds);
+        ids.addAll(updatedIds);
+        if (!ids.isEmpty()) {
+            // Notifications deleted in the meantime are no longer found and not pushed
+            notificationRepository.findByIdInWithRelations(ids).stream()
+                    .map(notification -> new Pending(notification.getUser().getId(),
+                            notificationMapper.toResponseDto(notification), updated.contains(notification.getId())))
+                    .sorted(Comparator.comparing((Pending pending) -> pending.notification().getCreatedAt())
+                            .thenComparing(pending -> pending.notification().getId()))
+                    .forEach(pending -> forEachConnection(pending.userId(), connection -> connection.enqueue(pending)));
+        }
+        countUserIds.forEach(userId -> forEachConnection(userId, Connection::markCountStale));
+    }
+
+    /**
+     * Tells every connection of this instance to reload, for changes that may not have been delivered.
+     */
+    public void resyncAll() {
+        connections.values().forEach(userConnections -> userConnections.forEach(Connection::requestResync));
+    }
+
+    private void forEachConnection(Long userId, Consumer<Connection> action) {
+        Set<Connection> userConnections = connections.get(userId);
+        if (userConnections != null) {
+            userConnections.forEach(action);
+        }
+    }
+
+    private void sendHeartbeats() {
+        long now = System.nanoTime();
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> connection.heartbeatIfIdle(now)));
+    }
+
+    private void disconnectStalled() {
+        long now = System.nanoTime();
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> connection.disconnectIfStalled(now)));
+    }
+
+    private void unregister(Connection connection) {
+        connections.computeIfPresent(connection.userId, (id, userConnections) -> {
+            userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+    }
+
+    // Threads are only held by connections with something to send and are released after a minute idle;
+    // a full queue rejects the drain, and the connection is disconnected
+    private static ExecutorService newDrainExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "notification-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdownStreamExecutor() {
+        scheduler.shutdownNow();
+        drainExecutor.shutdownNow();
+        // Clients reconnect, possibly to another instance, and resume from their last event id
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> connection.emitter.complete()));
+    }
+
+    private record Pending(Long userId, NotificationResponseDto notification, boolean updated) {
+    }
+
+    /**
+     * One open stream. Everything but the emitter and {@code sendStartedAt} is guarded by the connection's
+     * monitor; the emitter is only written to by the drain, which {@code scheduled} keeps single.
+     */
+    private final class Connection {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        // Notifications sent by the replay, which their live delivery must not repeat
+        private final Set<Long> replayedIds = new HashSet<>();
+        private boolean countStale;
+        private boolean heartbeatDue;
+        private boolean resync;
+        private boolean closed;
+        // Set until start(), so events arriving during the replay query wait in the queue
+        private boolean scheduled = true;
+        // System.nanoTime() when the drain's current send began, 0 while it is not sending
+        private volatile long sendStartedAt;
+        // System.nanoTime() when the connection opened or last took an event
+        private volatile long lastSentAt = System.nanoTime();
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private synchronized void start(List<NotificationResponseDto> missed, boolean resync) {
+            // Replayed notifications go first, then those delivered live during the replay query
+            List<Pending> pending = new ArrayList<>();
+            missed.forEach(notification -> {
+                replayedIds.add(notification.getId());
+                pending.add(new Pending(userId, notification, false));
+            });
+            queue.stream()
+                    .filter(entry -> entry.updated() || !replayedIds.contains(entry.notification().getId()))
+                    .forEach(pending::add);
+            queue.clear();
+            queue.addAll(pending);
+            this.resync = resync;
+            countStale = true;
+            scheduled = false;
+            schedule();
+        }
+
+        private synchronized void enqueue(Pending notification) {
+            if (closed || (!notification.updated() && replayedIds.contains(notification.notification().getId()))) {
+                return;
+            }
+            if (queue.size() >= queueCapacity) {
+                logger.debug("Notification stream of user {} fell behind, disconnecting", userId);
+                close();
+                return;
+            }
+            queue.add(notification);
+            schedule();
+        }
+
+        private synchronized void requestResync() {
+            resync = true;
+            countStale = true;
+            schedule();
+        }
+
+        private synchronized void markCountStale() {
+            countStale = true;
+            schedule();
+        }
+
+        private void heartbeatIfIdle(long now) {
+            if (now - lastSentAt < heartbeatNanos) {
+                return;
+            }
+            synchronized (this) {
+                heartbeatDue = true;
+                schedule();
+            }
+        }
+
+        // The drain completes the emitter, as it may be blocked writing to it
+        private synchronized void close() {
+            closed = true;
+            queue.clear();
+            unregister(this);
+            schedule();
+        }
+
+        // The drain is left to complete the emitter once the send returns
+        private void disconnectIfStalled(long now) {
+            long startedAt = sendStartedAt;
+            if (startedAt == 0 || now - startedAt < sendTimeoutNanos) {
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                logger.debug("Notification stream of user {} stopped reading, disconnecting", userId);
+                close();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            try {
+                drainExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                if (drainExecutor.isShutdown()) {
+                    // Shutting down, the emitter is completed by shutdownStreamExecutor
+                    return;
+                }
+                // No drain runs, so the emitter is completed here; scheduled stays set as nothing is sent anymore
+                logger.warn("Notification stream drain queue is full, disconnecting user {}", userId);
+                closed = true;
+                queue.clear();
+                unregister(this);
+                emitter.complete();
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Pending notification = null;
+                boolean sendResync = false;
+                boolean sendCount = false;
+                synchronized (this) {
+                    if (closed) {
+                        emitter.complete();
+                        return;
+                    } else if (resync) {
+                        resync = false;
+                        sendResync = true;
+                    } else if (!queue.isEmpty()) {
+                        notification = queue.poll();
+                    } else if (countStale) {
+                        countStale = false;
+                        heartbeatDue = false;
+                        sendCount = true;
+                    } else if (heartbeatDue) {
+                        heartbeatDue = false;
+                    } else {
+                        scheduled = false;
+                        return;
+                    }
+                }
+
+                try {
+                    SseEmitter.SseEventBuilder event;
+                    if (notification != null && notification.updated()) {
+                        event = SseEmitter.event().name("notification-updated").data(notification.notification());
+                    } else if (notification != null) {
+                        NotificationResponseDto created = notification.notification();
+                        event = SseEmitter.event().id(created.getId().toString()).name("notification").data(created);
+                    } else if (sendResync) {
+                        event = SseEmitter.event().name("resync").data("");
+                    } else if (sendCount) {
+                        long count = unreadNotificationCountService.getUnreadCount(userId);
+                        event = SseEmitter.event().name("unread-count").data(Map.of("count", count));
+                    } else {
+                        event = SseEmitter.event().comment("heartbeat");
+                    }
+                    sendStartedAt = System.nanoTime();
+                    emitter.send(event);
+                    lastSentAt = System.nanoTime();
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away or the emitter already completed
+                    synchronized (this) {
+                        closed = true;
+                        queue.clear();
+                    }
+                    unregister(this);
+                    return;
+                } catch (RuntimeException e) {
+                    logger.warn("Notification stream of user {} failed", userId, e);
+                    synchronized (this) {
+                        closed = true;
+                        queue.clear();
+                    }
+                    unregister(this);
+                    emitter.completeWithError(e);
+                    return;
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        }
+    }
+}
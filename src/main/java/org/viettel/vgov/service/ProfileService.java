@@ -1,19 +1,16 @@
 package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.viettel.vgov.dto.request.PasswordChangeRequestDto;
 import org.viettel.vgov.dto.request.ProfileUpdateRequestDto;
 import org.viettel.vgov.dto.response.UserResponseDto;
-import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.UserMapper;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.repository.UserRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.security.AccessContext;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -26,23 +23,16 @@ public class ProfileService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final AccessContext accessContext;
     
     public UserResponseDto getCurrentProfile() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
         
         return userMapper.toResponseDto(currentUser);
     }
     
     public UserResponseDto updateProfile(ProfileUpdateRequestDto requestDto) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
         
         // Update profile fields if provided
         if (requestDto.getFullName() != null) {
@@ -70,11 +60,7 @@ public class ProfileService {
     }
     
     public void changePassword(PasswordChangeRequestDto requestDto) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
         
         // Validate current password
         if (!passwordEncoder.matches(requestDto.getCurrentPassword(), currentUser.getPasswordHash())) {
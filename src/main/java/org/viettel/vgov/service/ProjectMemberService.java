@@ -1,15 +1,15 @@
 package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.viettel.vgov.dto.request.ProjectMemberRequestDto;
 import org.viettel.vgov.dto.response.ProjectMemberResponseDto;
 import org.viettel.vgov.dto.response.UserResponseDto;
 import org.viettel.vgov.dto.response.WorkloadHistoryResponseDto;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
 import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.ProjectMemberMapper;
 import org.viettel.vgov.mapper.UserMapper;
@@ -22,7 +22,7 @@ import org.viettel.vgov.repository.ProjectMemberRepository;
 import org.viettel.vgov.repository.ProjectRepository;
 import org.viettel.vgov.repository.UserRepository;
 import org.viettel.vgov.repository.WorkloadHistoryRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.security.AccessContext;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -43,31 +43,28 @@ public class ProjectMemberService {
     private final WorkloadHistoryRepository workloadHistoryRepository;
     private final WorkloadHistoryMapper workloadHistoryMapper;
     private final NotificationService notificationService;
+    private final AccessContext accessContext;
+    private final WorkloadIndexService workloadIndexService;
+    private final UtilizationService utilizationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ProjectMemberResponseDto> getProjectMembers(Long projectId) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + projectId));
 
         // Check access permission
         boolean hasAccess = false;
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
             case admin:
                 hasAccess = true;
                 break;
             case pm:
-                hasAccess = project.getPmEmail().equals(currentUser.getEmail());
+                hasAccess = accessContext.manages(project);
                 break;
             case dev:
             case ba:
             case test:
-                hasAccess = projectRepository.findProjectsByUserId(currentUser.getId())
-                        .stream()
-                        .anyMatch(p -> p.getId().equals(projectId));
+                hasAccess = accessContext.isAssignedTo(projectId);
                 break;
         }
 
@@ -101,6 +98,9 @@ public class ProjectMemberService {
             throw new IllegalArgumentException("Admin users cannot be added to projects");
         }
 
+        // The user row lock makes concurrent membership changes of the user check the limit one at a time
+        userRepository.lockById(user.getId());
+
         // Check if user is already a member of this project
         if (projectMemberRepository.existsByProjectIdAndUserIdAndIsActive(projectId, requestDto.getUserId(), true)) {
             throw new IllegalArgumentException("User is already a member of this project");
@@ -108,18 +108,11 @@ public class ProjectMemberService {
 
         // Check workload limit (max 100%)
         BigDecimal totalWorkload = projectMemberRepository.getTotalWorkloadByUserId(requestDto.getUserId());
-        if (totalWorkload == null) {
-            totalWorkload = BigDecimal.ZERO;
-        }
-
         if (totalWorkload.add(requestDto.getWorkloadPercentage()).compareTo(new BigDecimal("100")) > 0) {
             throw new org.viettel.vgov.exception.WorkloadExceededException("Total workload cannot exceed 100% for user: " + user.getFullName());
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
 
         ProjectMember projectMember = projectMemberMapper.toEntity(requestDto);
         projectMember.setProject(project);
@@ -131,6 +124,16 @@ public class ProjectMemberService {
         }
 
         ProjectMember savedMember = projectMemberRepository.save(projectMember);
+        workloadIndexService.memberAdded(savedMember);
+
+        // A back-dated membership changes allocation in weeks that may already be snapshotted
+        LocalDate effectiveFrom = savedMember.getLeftDate() != null && savedMember.getLeftDate().isBefore(savedMember.getJoinedDate())
+                ? savedMember.getLeftDate()
+                : savedMember.getJoinedDate();
+        if (effectiveFrom.isBefore(LocalDate.now())) {
+            utilizationService.invalidateFrom(effectiveFrom);
+        }
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(projectId));
 
         notificationService.notifyUserAddedToProject(project, user, currentUser);
 
@@ -141,20 +144,15 @@ public class ProjectMemberService {
         ProjectMember projectMember = projectMemberRepository.findByProjectIdAndUserIdAndIsActive(projectId, userId, true)
                 .orElseThrow(() -> new ResourceNotFoundException("Project member not found"));
 
-        // Check workload limit excluding current assignment
+        // Check workload limit excluding current assignment, with the user row locked as when adding a member
+        userRepository.lockById(userId);
         BigDecimal currentWorkload = projectMemberRepository.getTotalWorkloadByUserIdExcluding(userId, projectMember.getId());
-        if (currentWorkload == null) {
-            currentWorkload = BigDecimal.ZERO;
-        }
 
         if (currentWorkload.add(requestDto.getWorkloadPercentage()).compareTo(new BigDecimal("100")) > 0) {
             throw new IllegalArgumentException("Total workload cannot exceed 100% for this user");
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
 
         // Save history before updating
         WorkloadHistory history = WorkloadHistory.builder()
@@ -167,10 +165,13 @@ public class ProjectMemberService {
                 .build();
         workloadHistoryRepository.save(history);
 
+        BigDecimal oldWorkload = projectMember.getWorkloadPercentage();
         projectMember.setWorkloadPercentage(requestDto.getWorkloadPercentage());
         projectMember.setUpdatedBy(currentUser);
 
         ProjectMember savedMember = projectMemberRepository.save(projectMember);
+        workloadIndexService.workloadChanged(savedMember, oldWorkload);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(projectId));
         return projectMemberMapper.toResponseDto(savedMember);
     }
 
@@ -178,18 +179,17 @@ public class ProjectMemberService {
         ProjectMember projectMember = projectMemberRepository.findByProjectIdAndUserIdAndIsActive(projectId, userId, true)
                 .orElseThrow(() -> new ResourceNotFoundException("Project member not found"));
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
 
         projectMember.setIsActive(false);
         projectMember.setLeftDate(LocalDate.now());
         projectMember.setUpdatedBy(currentUser);
 
         projectMemberRepository.save(projectMember);
+        workloadIndexService.memberRemoved(projectMember);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(projectId));
 
-        // TODO: Send notification to all project members about member removal
+        notificationService.notifyMemberRemovedFromProject(projectMember.getProject(), projectMember.getUser(), currentUser);
     }
 
     public UserResponseDto getUserWorkload(Long userId) {
@@ -199,10 +199,7 @@ public class ProjectMemberService {
         UserResponseDto userDto = userMapper.toResponseDto(user);
 
         // Get current workload
-        BigDecimal totalWorkload = projectMemberRepository.getTotalWorkloadByUserId(userId);
-        if (totalWorkload == null) {
-            totalWorkload = BigDecimal.ZERO;
-        }
+        BigDecimal totalWorkload = workloadIndexService.getTotalWorkload(userId);
 
         // TODO: Add workload field to UserResponseDto or create separate WorkloadResponseDto
 
@@ -0,0 +1,137 @@
+package org.viettel.vgov.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.viettel.vgov.event.NotificationsChangedEvent;
+import org.viettel.vgov.model.Notification;
+import org.viettel.vgov.model.ProjectNotificationEvent;
+import org.viettel.vgov.repository.NotificationDigestEntryRepository;
+import org.viettel.vgov.repository.NotificationRepository;
+import org.viettel.vgov.repository.ProjectNotificationEventRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Turns project notification outbox entries into notifications. Each batch is claimed with
+ * {@code FOR UPDATE SKIP LOCKED}, so several instances can dispatch side by side, and its entries are
+ * deleted in the transaction that inserts their notifications: a crash before the commit leaves them
+ * to be dispatched again. An entry that fails is retried with exponential backoff.
+ * <p>
+ * Members who opted into the daily digest get a digest entry instead of a notification. For the others,
+ * an update that finds an unread notification of the same type about the project, created within the
+ * coalescing window, is merged into it rather than inserted again.
+ */
+@Service
+public class ProjectNotificationDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectNotificationDispatcher.class);
+
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    private final ProjectNotificationEventRepository eventRepository;
+    private final NotificationRepository notificationRepository;
+    private final NotificationDigestEntryRepository digestEntryRepository;
+    private final UnreadNotificationCountService unreadNotificationCountService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration coalescingWindow;
+
+    public ProjectNotificationDispatcher(ProjectNotificationEventRepository eventRepository,
+                                         NotificationRepository notificationRepository,
+                                         NotificationDigestEntryRepository digestEntryRepository,
+                                         UnreadNotificationCountService unreadNotificationCountService,
+                                         ApplicationEventPublisher eventPublisher,
+                                         PlatformTransactionManager transactionManager,
+                                         @Value("${vgov.notifications.outbox.batch-size}") int batchSize,
+                                         @Value("${vgov.notifications.coalescing.window}") Duration coalescingWindow) {
+        this.eventRepository = eventRepository;
+        this.notificationRepository = notificationRepository;
+        this.digestEntryRepository = digestEntryRepository;
+        this.unreadNotificationCountService = unreadNotificationCountService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.coalescingWindow = coalescingWindow;
+    }
+
+    @Scheduled(fixedDelayString = "${vgov.notifications.outbox.poll-interval}")
+    public void dispatchDue() {
+        while (true) {
+            ProjectNotificationEvent[] current = new ProjectNotificationEvent[1];
+            try {
+                Integer claimed = transactionTemplate.execute(status -> dispatchBatch(current));
+                if (claimed == null || claimed < batchSize) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                if (current[0] == null) {
+                    logger.warn("Claiming project notification events failed", e);
+                    return;
+                }
+                // The batch rolled back; the failed entry is postponed and the others wait for the next poll
+                recordFailure(current[0], e);
+                return;
+            }
+        }
+    }
+
+    private int dispatchBatch(ProjectNotificationEvent[] current) {
+        List<ProjectNotificationEvent> events = eventRepository.claimDue(LocalDateTime.now(), batchSize);
+        for (ProjectNotificationEvent event : events) {
+            current[0] = event;
+            dispatch(event);
+        }
+        current[0] = null;
+        return events.size();
+    }
+
+    private void dispatch(ProjectNotificationEvent event) {
+        digestEntryRepository.insertForDigestProjectMembers(event.getProjectId(), event.getActorUserId(),
+                event.getTitle(), event.getMessage(), event.getNotificationType(), event.getCreatedAt());
+
+        // Stamped with the insert time rather than the entry's, which a delayed or retried dispatch leaves
+        // behind the notifications a resuming stream client has already seen
+        LocalDateTime now = LocalDateTime.now();
+        // A non-positive window disables coalescing
+        LocalDateTime since = !coalescingWindow.isNegative() && !coalescingWindow.isZero() ? now.minus(coalescingWindow) : null;
+        List<Notification> coalesced = List.of();
+        if (since != null) {
+            List<Long> coalescedIds = notificationRepository.coalesceForProjectMembers(event.getProjectId(),
+                    event.getActorUserId(), event.getTitle(), event.getMessage(), event.getNotificationType(),
+                    event.getCreatedAt(), since);
+            if (!coalescedIds.isEmpty()) {
+                coalesced = notificationRepository.findByIdInWithRelations(coalescedIds);
+            }
+        }
+
+        List<Long> ids = notificationRepository.insertForProjectMembers(event.getProjectId(), event.getActorUserId(),
+                event.getTitle(), event.getMessage(), event.getNotificationType(), now, event.getCreatedAt(), since);
+        List<Notification> created = ids.isEmpty() ? List.of() : notificationRepository.findByIdInWithRelations(ids);
+        unreadNotificationCountService.recordCreated(created);
+        if (!created.isEmpty() || !coalesced.isEmpty()) {
+            eventPublisher.publishEvent(NotificationsChangedEvent.of(created, coalesced));
+        }
+        eventRepository.delete(event);
+    }
+
+    private void recordFailure(ProjectNotificationEvent event, RuntimeException error) {
+        long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(event.getAttempts(), 20));
+        logger.warn("Dispatching project notification event {} failed (attempt {}), retrying in {}s",
+                event.getId(), event.getAttempts() + 1, backoffSeconds, error);
+        try {
+            transactionTemplate.executeWithoutResult(status -> eventRepository.recordFailure(
+                    event.getId(), LocalDateTime.now().plusSeconds(backoffSeconds), String.valueOf(error)));
+        } catch (RuntimeException e) {
+            logger.warn("Recording the failure of project notification event {} failed", event.getId(), e);
+        }
+    }
+}
@@ -2,68 +2,25 @@ package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.viettel.vgov.model.Project;
-import org.viettel.vgov.model.User;
-import org.viettel.vgov.repository.ProjectMemberRepository;
-import org.viettel.vgov.repository.ProjectRepository;
-import org.viettel.vgov.repository.UserRepository;
+import org.viettel.vgov.security.AccessContext;
 
 @Service("projectSecurityService")
 @RequiredArgsConstructor
 public class ProjectSecurityService {
     
-    private final UserRepository userRepository;
-    private final ProjectRepository projectRepository;
-    private final ProjectMemberRepository projectMemberRepository;
+    private final AccessContext accessContext;
     
-    public boolean canAccessProject(Long projectId, String userEmail) {
-        User user = userRepository.findByEmail(userEmail).orElse(null);
-        if (user == null) {
-            return false;
-        }
-        
-        Project project = projectRepository.findById(projectId).orElse(null);
-        if (project == null) {
-            return false;
-        }
-        
-        // Check access based on role
-        switch (user.getRole()) {
-            case admin:
-                return true;
-            case pm:
-                return project.getPmEmail().equals(user.getEmail());
-            case dev:
-            case ba:
-            case test:
-                return projectMemberRepository.existsByProjectIdAndUserIdAndIsActive(projectId, user.getId(), true);
-            default:
-                return false;
-        }
+    public boolean canAccessProject(Long projectId) {
+        return accessContext.canAccessProject(projectId);
     }
     
-    public boolean canManageProject(Long projectId, String userEmail) {
-        User user = userRepository.findByEmail(userEmail).orElse(null);
-        if (user == null) {
-            return false;
-        }
-        
-        Project project = projectRepository.findById(projectId).orElse(null);
-        if (project == null) {
-            return false;
-        }
-        
+    public boolean canManageProject(Long projectId) {
         // Only admin can manage projects
-        return user.getRole() == User.Role.admin;
+        return accessContext.isAdmin();
     }
     
-    public boolean canManageProjectMembers(Long projectId, String userEmail) {
-        User user = userRepository.findByEmail(userEmail).orElse(null);
-        if (user == null) {
-            return false;
-        }
-        
+    public boolean canManageProjectMembers(Long projectId) {
         // Only admin can manage project members
-        return user.getRole() == User.Role.admin;
+        return accessContext.isAdmin();
     }
 }
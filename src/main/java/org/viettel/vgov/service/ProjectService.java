@@ -1,18 +1,21 @@
 package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.viettel.vgov.dto.request.ProjectMemberRequestDto;
 import org.viettel.vgov.dto.request.ProjectRequestDto;
+import org.viettel.vgov.dto.response.PageCursor;
 import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.dto.response.ProjectResponseDto;
+import org.viettel.vgov.dto.response.SuggestionResponseDto;
 import org.viettel.vgov.dto.response.UserProjectHistoryResponseDto;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
 import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.ProjectMapper;
 import org.viettel.vgov.model.Project;
@@ -21,10 +24,11 @@ import org.viettel.vgov.model.User;
 import org.viettel.vgov.repository.ProjectMemberRepository;
 import org.viettel.vgov.repository.ProjectRepository;
 import org.viettel.vgov.repository.UserRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.security.AccessContext;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -39,29 +43,29 @@ public class ProjectService {
     private final ProjectMapper projectMapper;
     private final ProjectMemberService projectMemberService;
     private final ProjectMemberRepository projectMemberRepository;
+    private final AccessContext accessContext;
+    private final WorkloadIndexService workloadIndexService;
+    private final UtilizationService utilizationService;
+    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PagedResponse<ProjectResponseDto> getAllProjects(Pageable pageable) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
         Page<Project> projects;
 
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
             case admin:
                 // Admin can see all projects
                 projects = projectRepository.findAll(pageable);
                 break;
             case pm:
                 // PM can only see projects they manage
-                projects = projectRepository.findByPmEmail(currentUser.getEmail(), pageable);
+                projects = projectRepository.findByPmEmail(accessContext.getEmail(), pageable);
                 break;
             case dev:
             case ba:
             case test:
                 // Dev/BA/Test can only see assigned projects
-                projects = projectRepository.findProjectsByUserId(currentUser.getId(), pageable);
+                projects = projectRepository.findProjectsByUserId(accessContext.getUserId(), pageable);
                 break;
             default:
                 throw new AccessDeniedException("Access denied");
@@ -72,46 +76,26 @@ public class ProjectService {
     }
 
     public PagedResponse<ProjectResponseDto> getAllProjects(Pageable pageable, String search, String projectStatus, String projectType) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
         // Convert string parameters to enums
-        Project.Status statusEnum = null;
-        if (projectStatus != null && !projectStatus.isEmpty()) {
-            try {
-                statusEnum = Project.Status.valueOf(projectStatus);
-            } catch (IllegalArgumentException e) {
-                // Invalid status, keep as null
-            }
-        }
-
-        Project.ProjectType typeEnum = null;
-        if (projectType != null && !projectType.isEmpty()) {
-            try {
-                typeEnum = Project.ProjectType.valueOf(projectType);
-            } catch (IllegalArgumentException e) {
-                // Invalid type, keep as null
-            }
-        }
+        Project.Status statusEnum = parseStatus(projectStatus);
+        Project.ProjectType typeEnum = parseProjectType(projectType);
 
         Page<Project> projects;
 
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
             case admin:
                 // Admin can see all projects with filters
                 projects = projectRepository.findProjectsWithFilters(search, statusEnum, typeEnum, pageable);
                 break;
             case pm:
                 // PM can only see projects they manage with filters
-                projects = projectRepository.findProjectsWithFiltersForPM(currentUser.getEmail(), search, statusEnum, typeEnum, pageable);
+                projects = projectRepository.findProjectsWithFiltersForPM(accessContext.getEmail(), search, statusEnum, typeEnum, pageable);
                 break;
             case dev:
             case ba:
             case test:
                 // Dev/BA/Test can only see assigned projects with filters
-                projects = projectRepository.findProjectsWithFiltersForUser(currentUser.getId(), search, statusEnum, typeEnum, pageable);
+                projects = projectRepository.findProjectsWithFiltersForUser(accessContext.getUserId(), search, statusEnum, typeEnum, pageable);
                 break;
             default:
                 throw new AccessDeniedException("Access denied");
@@ -121,28 +105,126 @@ public class ProjectService {
         return PagedResponse.of(projectDtos);
     }
 
-    public List<ProjectResponseDto> getAllProjects() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    /**
+     * Top matches for a project search box, ordered by similarity and limited to the projects
+     * the current user can list.
+     */
+    public List<SuggestionResponseDto> suggestProjects(String query, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            return List.of();
+        }
+        String pmEmail = null;
+        Long memberId = null;
+        switch (accessContext.getRole()) {
+            case admin:
+                break;
+            case pm:
+                pmEmail = accessContext.getEmail();
+                break;
+            case dev:
+            case ba:
+            case test:
+                memberId = accessContext.getUserId();
+                break;
+            default:
+                throw new AccessDeniedException("Access denied");
+        }
 
+        return projectRepository.suggestProjects(query.trim(), pmEmail, memberId, SuggestionResponseDto.resolveLimit(limit))
+                .stream()
+                .map(row -> new SuggestionResponseDto(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        null, ((Number) row[3]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    public PagedResponse<ProjectResponseDto> getProjectsAfter(String search, String projectStatus, String projectType,
+                                                             String after, Integer limit) {
+        Project.Status statusEnum = parseStatus(projectStatus);
+        Project.ProjectType typeEnum = parseProjectType(projectType);
+        int pageSize = PageCursor.resolveLimit(limit);
+
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (after != null && !after.isEmpty()) {
+            PageCursor cursor = PageCursor.decode(after);
+            afterCreatedAt = cursor.parseKey(LocalDateTime::parse);
+            afterId = cursor.getId();
+        }
+
+        // Fetch one extra row to know whether another page exists
+        Limit fetchLimit = Limit.of(pageSize + 1);
         List<Project> projects;
 
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
+            case admin:
+                projects = projectRepository.findProjectsWithFiltersAfter(
+                        search, statusEnum, typeEnum, afterCreatedAt, afterId, fetchLimit);
+                break;
+            case pm:
+                projects = projectRepository.findProjectsWithFiltersForPMAfter(
+                        accessContext.getEmail(), search, statusEnum, typeEnum, afterCreatedAt, afterId, fetchLimit);
+                break;
+            case dev:
+            case ba:
+            case test:
+                projects = projectRepository.findProjectsWithFiltersForUserAfter(
+                        accessContext.getUserId(), search, statusEnum, typeEnum, afterCreatedAt, afterId, fetchLimit);
+                break;
+            default:
+                throw new AccessDeniedException("Access denied");
+        }
+
+        String nextCursor = null;
+        if (projects.size() > pageSize) {
+            projects = projects.subList(0, pageSize);
+            Project last = projects.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt().toString(), last.getId()).encode();
+        }
+
+        return PagedResponse.ofCursor(projects.stream()
+                .map(projectMapper::toResponseDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    private Project.Status parseStatus(String projectStatus) {
+        if (projectStatus != null && !projectStatus.isEmpty()) {
+            try {
+                return Project.Status.valueOf(projectStatus);
+            } catch (IllegalArgumentException e) {
+                // Invalid status, keep as null
+            }
+        }
+        return null;
+    }
+
+    private Project.ProjectType parseProjectType(String projectType) {
+        if (projectType != null && !projectType.isEmpty()) {
+            try {
+                return Project.ProjectType.valueOf(projectType);
+            } catch (IllegalArgumentException e) {
+                // Invalid type, keep as null
+            }
+        }
+        return null;
+    }
+
+    public List<ProjectResponseDto> getAllProjects() {
+        List<Project> projects;
+
+        switch (accessContext.getRole()) {
             case admin:
                 // Admin can see all projects
                 projects = projectRepository.findAll();
                 break;
             case pm:
                 // PM can only see projects they manage
-                projects = projectRepository.findByPmEmail(currentUser.getEmail());
+                projects = projectRepository.findByPmEmail(accessContext.getEmail());
                 break;
             case dev:
             case ba:
             case test:
                 // Dev/BA/Test can only see assigned projects
-                projects = projectRepository.findProjectsByUserId(currentUser.getId());
+                projects = projectRepository.findProjectsByUserId(accessContext.getUserId());
                 break;
             default:
                 throw new AccessDeniedException("Access denied");
@@ -154,29 +236,22 @@ public class ProjectService {
     }
 
     public ProjectResponseDto getProjectById(Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
         Project project = projectRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + id));
 
         // Check access permission
         boolean hasAccess = false;
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
             case admin:
                 hasAccess = true;
                 break;
             case pm:
-                hasAccess = project.getPmEmail().equals(currentUser.getEmail());
+                hasAccess = accessContext.manages(project);
                 break;
             case dev:
             case ba:
             case test:
-                hasAccess = projectRepository.findProjectsByUserId(currentUser.getId())
-                        .stream()
-                        .anyMatch(p -> p.getId().equals(id));
+                hasAccess = accessContext.isAssignedTo(id);
                 break;
         }
 
@@ -197,16 +272,14 @@ public class ProjectService {
             throw new IllegalArgumentException("End date must be after start date");
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
 
         Project project = projectMapper.toEntity(requestDto);
         project.setCreatedBy(currentUser);
         project.setUpdatedBy(currentUser);
 
         Project savedProject = projectRepository.save(project);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(savedProject.getId()));
 
         // Automatically add the PM to the project with 0% workload
         if (savedProject.getPmEmail() != null && !savedProject.getPmEmail().isEmpty()) {
@@ -242,10 +315,10 @@ public class ProjectService {
             throw new IllegalArgumentException("End date must be after start date");
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
+
+        // Published before and after the update, so both the previous and the new PM are covered
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(project.getId()));
 
         // Update project fields
         project.setProjectCode(requestDto.getProjectCode());
@@ -257,12 +330,15 @@ public class ProjectService {
         // Check if status is changing to Closed to set the actualClosedDate
         if (requestDto.getStatus() == Project.Status.Closed && project.getStatus() != Project.Status.Closed) {
             project.setActualClosedDate(LocalDate.now());
+            workloadIndexService.projectRemoved(project);
         }
         project.setStatus(requestDto.getStatus());
         project.setDescription(requestDto.getDescription());
+        project.setEstimatedEffortHours(requestDto.getEstimatedEffortHours());
         project.setUpdatedBy(currentUser);
 
         Project savedProject = projectRepository.save(project);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(savedProject.getId()));
         return projectMapper.toResponseDto(savedProject);
     }
 
@@ -270,6 +346,13 @@ public class ProjectService {
         Project project = projectRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + id));
 
+        workloadIndexService.projectRemoved(project);
+        LocalDate earliestJoinedDate = projectMemberRepository.findEarliestJoinedDateByProjectId(project.getId());
+        if (earliestJoinedDate != null) {
+            utilizationService.invalidateFrom(earliestJoinedDate);
+        }
+        notificationService.deleteProjectNotifications(project.getId());
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(project.getId()));
         projectRepository.delete(project);
     }
 
@@ -284,22 +367,24 @@ public class ProjectService {
         // Set the actual closed date if the status is changing to "Closed"
         if (status == Project.Status.Closed) {
             project.setActualClosedDate(LocalDate.now());
+            workloadIndexService.projectRemoved(project);
         } else {
             // If for some reason the project is reopened, clear the date
             project.setActualClosedDate(null);
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        User currentUser = accessContext.getCurrentUser();
 
+        Project.Status oldStatus = project.getStatus();
         project.setStatus(status);
         project.setUpdatedBy(currentUser);
 
         Project savedProject = projectRepository.save(project);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(savedProject.getId()));
 
-        // TODO: Send notification to all project members about status change
+        if (oldStatus != status) {
+            notificationService.notifyProjectStatusChanged(savedProject, oldStatus, currentUser);
+        }
 
         return projectMapper.toResponseDto(savedProject);
     }
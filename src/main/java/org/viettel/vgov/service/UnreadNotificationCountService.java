@@ -0,0 +1,81 @@
+package org.viettel.vgov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.model.Notification;
+import org.viettel.vgov.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains each user's unread notification count in users.unread_notification_count. Notification
+ * writes adjust it in their own transaction, and reads are a primary key lookup of the column, exact
+ * on every instance. A periodic reconciliation repairs counts that drifted, for instance through
+ * notifications written outside this service.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class UnreadNotificationCountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadNotificationCountService.class);
+
+    private final UserRepository userRepository;
+
+    @Transactional(readOnly = true)
+    public long getUnreadCount(Long userId) {
+        return userRepository.findUnreadNotificationCountById(userId).orElse(0).longValue();
+    }
+
+    public void recordCreated(Collection<Notification> notifications) {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (Notification notification : notifications) {
+            if (!Boolean.TRUE.equals(notification.getIsRead())) {
+                deltas.merge(notification.getUser().getId(), 1, Integer::sum);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        userRepository.applyUnreadNotificationDeltas(
+                deltas.keySet().toArray(new Long[0]),
+                deltas.values().toArray(new Integer[0]));
+    }
+
+    public void recordRead(Long userId, int count) {
+        if (count == 0) {
+            return;
+        }
+        userRepository.applyUnreadNotificationDeltas(new Long[]{userId}, new Integer[]{-count});
+    }
+
+    /**
+     * Takes a project's unread notifications off their users' counts; called before they are deleted with the project.
+     */
+    public void recordProjectDeleted(Long projectId) {
+        userRepository.subtractUnreadNotificationsOfProject(projectId);
+    }
+
+    /**
+     * Takes the unread notifications created before the given instant off their users' counts; called
+     * before retention purges them.
+     */
+    public void recordPurgedBefore(LocalDateTime before) {
+        userRepository.subtractUnreadNotificationsCreatedBefore(before);
+    }
+
+    @Scheduled(fixedDelayString = "${vgov.notifications.unread-count-reconciliation-interval}")
+    public void reconcile() {
+        int repaired = userRepository.reconcileUnreadNotificationCounts();
+        if (repaired > 0) {
+            logger.info("Repaired the unread notification count of {} users", repaired);
+        }
+    }
+}
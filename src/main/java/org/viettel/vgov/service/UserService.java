@@ -1,27 +1,29 @@
 package org.viettel.vgov.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.viettel.vgov.dto.request.UserRequestDto;
 import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.dto.response.PmInfoResponseDto;
+import org.viettel.vgov.dto.response.SuggestionResponseDto;
 import org.viettel.vgov.dto.response.UserResponseDto;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
 import org.viettel.vgov.mapper.UserMapper;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.repository.UserRepository;
-import org.viettel.vgov.repository.ProjectMemberRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.security.AccessContext;
+import org.viettel.vgov.security.TokenRevocationCache;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,9 +32,12 @@ import java.util.stream.Collectors;
 public class UserService {
     
     private final UserRepository userRepository;
-    private final ProjectMemberRepository projectMemberRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final AccessContext accessContext;
+    private final TokenRevocationCache tokenRevocationCache;
+    private final WorkloadIndexService workloadIndexService;
+    private final ApplicationEventPublisher eventPublisher;
     
     public PagedResponse<UserResponseDto> getAllUsers(Pageable pageable) {
         Page<User> users = userRepository.findByIsActiveTrue(pageable);
@@ -55,6 +60,17 @@ public class UserService {
         return PagedResponse.of(userDtos);
     }
     
+    public List<SuggestionResponseDto> suggestUsers(String query, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            return List.of();
+        }
+        return userRepository.suggestUsers(query.trim(), SuggestionResponseDto.resolveLimit(limit))
+                .stream()
+                .map(row -> new SuggestionResponseDto(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        (String) row[3], ((Number) row[4]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+    
     public List<UserResponseDto> getAllUsers() {
         List<User> users = userRepository.findByIsActiveTrue();
         return users.stream()
@@ -83,10 +99,11 @@ public class UserService {
         user.setPasswordHash(passwordEncoder.encode(requestDto.getPassword()));
         
         // Set created by current user
-        User currentUser = getCurrentUser();
+        User currentUser = accessContext.getCurrentUser();
         user.setCreatedBy(currentUser);
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofUser(savedUser.getId()));
         return userMapper.toResponseDto(savedUser);
     }
     
@@ -106,6 +123,11 @@ public class UserService {
             throw new RuntimeException("Employee code is already in use!");
         }
         
+        // Tokens carry the email, role and active flag, so changing any of them revokes the user's tokens
+        boolean identityChanged = !user.getEmail().equals(requestDto.getEmail())
+                || user.getRole() != requestDto.getRole()
+                || !Objects.equals(user.getIsActive(), requestDto.getIsActive());
+        
         userMapper.updateEntityFromDto(requestDto, user);
         
         // Update password if provided
@@ -114,10 +136,14 @@ public class UserService {
         }
         
         // Set updated by current user
-        User currentUser = getCurrentUser();
+        User currentUser = accessContext.getCurrentUser();
         user.setUpdatedBy(currentUser);
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofUser(savedUser.getId()));
+        if (identityChanged) {
+            tokenRevocationCache.revoke(savedUser.getId());
+        }
         return userMapper.toResponseDto(savedUser);
     }
     
@@ -126,10 +152,12 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         
         user.setIsActive(false);
-        User currentUser = getCurrentUser();
+        User currentUser = accessContext.getCurrentUser();
         user.setUpdatedBy(currentUser);
         
         userRepository.save(user);
+        tokenRevocationCache.revoke(user.getId());
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofUser(user.getId()));
     }
     
     public UserResponseDto changeUserRole(Long id, User.Role newRole) {
@@ -142,10 +170,12 @@ public class UserService {
         }
         
         user.setRole(newRole);
-        User currentUser = getCurrentUser();
+        User currentUser = accessContext.getCurrentUser();
         user.setUpdatedBy(currentUser);
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofUser(savedUser.getId()));
+        tokenRevocationCache.revoke(savedUser.getId());
         return userMapper.toResponseDto(savedUser);
     }
     
@@ -154,10 +184,14 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         
         user.setIsActive(isActive);
-        User currentUser = getCurrentUser();
+        User currentUser = accessContext.getCurrentUser();
         user.setUpdatedBy(currentUser);
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofUser(savedUser.getId()));
+        if (!isActive) {
+            tokenRevocationCache.revoke(savedUser.getId());
+        }
         return userMapper.toResponseDto(savedUser);
     }
     
@@ -168,16 +202,10 @@ public class UserService {
         Map<String, Object> workloadInfo = new HashMap<>();
         
         // Get current total workload
-        BigDecimal totalWorkload = projectMemberRepository.getTotalWorkloadByUserId(id);
-        if (totalWorkload == null) {
-            totalWorkload = BigDecimal.ZERO;
-        }
+        BigDecimal totalWorkload = workloadIndexService.getTotalWorkload(id);
         
         // Get active project count
-        Integer activeProjectCount = projectMemberRepository.countActiveProjectsByUserId(id);
-        if (activeProjectCount == null) {
-            activeProjectCount = 0;
-        }
+        int activeProjectCount = workloadIndexService.getActiveProjectCount(id);
         
         // Calculate available capacity
         BigDecimal availableCapacity = BigDecimal.valueOf(100).subtract(totalWorkload);
@@ -226,46 +254,19 @@ public class UserService {
         }
     }
     
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new RuntimeException("No authenticated user found");
-        }
-        
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        return userRepository.findByEmail(userPrincipal.getEmail())
-                .orElseThrow(() -> new RuntimeException("Current user not found"));
-    }
-    
     /**
      * Get all active PMs with their project counts and workloads
      * @return List of PM information DTOs
      */
     public List<PmInfoResponseDto> getAllPMsInfo() {
-        List<User> pmUsers = userRepository.findActiveUsersByRole(User.Role.pm);
-        
-        return pmUsers.stream()
-                .map(user -> {
-                    // Get active project count
-                    Integer activeProjectCount = projectMemberRepository.countActiveProjectsByUserId(user.getId());
-                    if (activeProjectCount == null) {
-                        activeProjectCount = 0;
-                    }
-                    
-                    // Get total workload
-                    BigDecimal totalWorkload = projectMemberRepository.getTotalWorkloadByUserId(user.getId());
-                    if (totalWorkload == null) {
-                        totalWorkload = BigDecimal.ZERO;
-                    }
-                    
-                    return PmInfoResponseDto.builder()
-                            .id(user.getId())
-                            .fullName(user.getFullName())
-                            .email(user.getEmail())
-                            .activeProjectCount(activeProjectCount)
-                            .totalWorkload(totalWorkload)
-                            .build();
-                })
+        return userRepository.findByRoleAndIsActiveTrueOrderByIdAsc(User.Role.pm).stream()
+                .map(pm -> PmInfoResponseDto.builder()
+                        .id(pm.getId())
+                        .fullName(pm.getFullName())
+                        .email(pm.getEmail())
+                        .activeProjectCount(workloadIndexService.getActiveProjectCount(pm.getId()))
+                        .totalWorkload(workloadIndexService.getTotalWorkload(pm.getId()))
+                        .build())
                 .collect(Collectors.toList());
     }
 }
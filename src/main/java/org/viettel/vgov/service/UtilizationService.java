@@ -0,0 +1,300 @@
+package org.viettel.vgov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.dto.response.UtilizationResponseDto;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.model.UtilizationSnapshot;
+import org.viettel.vgov.repository.UserRepository;
+import org.viettel.vgov.repository.UtilizationSnapshotRepository;
+import org.viettel.vgov.repository.WorkloadHistoryRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Allocation over time, replayed from membership starts and ends and the workload history. Replays
+ * resume from the latest persisted weekly snapshot and persist the completed weeks they pass, so later
+ * queries only replay the events after it.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class UtilizationService {
+
+    private static final int MAX_PERIODS = 520;
+
+    // Advisory lock taken shared by replays and exclusively by snapshot invalidation
+    private static final long SNAPSHOT_LOCK_KEY = 0x5554494C534E4150L;
+
+    private final UtilizationSnapshotRepository utilizationSnapshotRepository;
+    private final WorkloadHistoryRepository workloadHistoryRepository;
+    private final UserRepository userRepository;
+    private final AnalyticsCacheService analyticsCacheService;
+
+    public UtilizationResponseDto getUtilization(LocalDate from, LocalDate to, String granularity) {
+        Granularity unit = Granularity.parse(granularity);
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("From date must not be after to date");
+        }
+        List<LocalDate> periods = unit.periods(from, to);
+        if (periods.size() > MAX_PERIODS) {
+            throw new IllegalArgumentException("Date range cannot span more than " + MAX_PERIODS + " " + unit.label + "s");
+        }
+        return analyticsCacheService.get("analytics.utilization", List.of(unit.label, periods.get(0), periods.get(periods.size() - 1)),
+                () -> buildUtilization(unit, periods));
+    }
+
+    private UtilizationResponseDto buildUtilization(Granularity unit, List<LocalDate> periods) {
+        List<User> users = userRepository.findByIsActiveTrueOrderByIdAsc().stream()
+                .filter(user -> user.getRole() != User.Role.admin)
+                .collect(Collectors.toList());
+        int[][] allocations = new int[users.size()][periods.size()];
+
+        utilizationSnapshotRepository.lockForReplay(SNAPSHOT_LOCK_KEY);
+        LocalDate firstPeriod = periods.get(0);
+        LocalDate lastPeriod = periods.get(periods.size() - 1);
+        AllocationReplay replay = new AllocationReplay();
+        LocalDate resumeFrom = utilizationSnapshotRepository.findFirstByWeekStartLessThanEqualOrderByWeekStartDesc(firstPeriod)
+                .map(snapshot -> {
+                    replay.restore(snapshot);
+                    return snapshot.getWeekStart();
+                })
+                .orElse(null);
+
+        LocalDate lastSnapshotWeek = min(lastPeriod, LocalDate.now());
+        SnapshotWriter snapshots = new SnapshotWriter(replay, lastSnapshotWeek,
+                new HashSet<>(utilizationSnapshotRepository.findWeekStartsBetween(
+                        resumeFrom != null ? resumeFrom : firstPeriod, lastSnapshotWeek)));
+        if (resumeFrom != null) {
+            snapshots.nextWeek = resumeFrom.plusWeeks(1);
+        }
+
+        try (Stream<Object[]> events = workloadHistoryRepository.streamAllocationEvents(
+                resumeFrom != null ? resumeFrom.atStartOfDay() : null, lastPeriod.atStartOfDay())) {
+            Iterator<Object[]> iterator = events.iterator();
+            Object[] event = iterator.hasNext() ? iterator.next() : null;
+            for (int p = 0; p < periods.size(); p++) {
+                LocalDateTime periodStart = periods.get(p).atStartOfDay();
+                while (event != null && timestamp(event).isBefore(periodStart)) {
+                    LocalDateTime at = timestamp(event);
+                    snapshots.writeUpTo(at);
+                    replay.apply(((Number) event[0]).longValue(), ((Number) event[1]).longValue(),
+                            ((BigDecimal) event[3]).movePointRight(2).intValueExact());
+                    if (snapshots.nextWeek == null) {
+                        snapshots.nextWeek = at.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).plusWeeks(1);
+                    }
+                    event = iterator.hasNext() ? iterator.next() : null;
+                }
+                snapshots.writeUpTo(periodStart);
+                for (int u = 0; u < users.size(); u++) {
+                    allocations[u][p] = replay.userBasisPoints(users.get(u).getId());
+                }
+            }
+        }
+
+        return toResponse(unit, periods, users, allocations);
+    }
+
+    /**
+     * Drops the snapshots that an allocation change effective from the given date makes stale. Blocks until
+     * running replays finish, so none of them persists a snapshot computed without the change.
+     */
+    public void invalidateFrom(LocalDate date) {
+        utilizationSnapshotRepository.lockForInvalidation(SNAPSHOT_LOCK_KEY);
+        utilizationSnapshotRepository.deleteByWeekStartAfter(date);
+    }
+
+    private UtilizationResponseDto toResponse(Granularity unit, List<LocalDate> periods, List<User> users, int[][] allocations) {
+        List<UtilizationResponseDto.UserUtilizationDto> userSeries = new ArrayList<>(users.size());
+        for (int u = 0; u < users.size(); u++) {
+            User user = users.get(u);
+            userSeries.add(new UtilizationResponseDto.UserUtilizationDto(
+                    user.getId(), user.getFullName(), user.getRole().name(), toPercentages(allocations[u])));
+        }
+
+        Map<String, List<BigDecimal>> byRole = new LinkedHashMap<>();
+        for (User.Role role : User.Role.values()) {
+            if (role == User.Role.admin) {
+                continue;
+            }
+            int[] members = new int[users.size()];
+            int count = 0;
+            for (int u = 0; u < users.size(); u++) {
+                if (users.get(u).getRole() == role) {
+                    members[count++] = u;
+                }
+            }
+            byRole.put(role.name(), averages(allocations, Arrays.copyOf(members, count), periods.size()));
+        }
+
+        int[] everyone = new int[users.size()];
+        Arrays.setAll(everyone, u -> u);
+        return new UtilizationResponseDto(unit.label, periods, averages(allocations, everyone, periods.size()), byRole, userSeries);
+    }
+
+    private static List<BigDecimal> averages(int[][] allocations, int[] rows, int periods) {
+        List<BigDecimal> result = new ArrayList<>(periods);
+        for (int p = 0; p < periods; p++) {
+            long total = 0;
+            for (int row : rows) {
+                total += allocations[row][p];
+            }
+            result.add(rows.length == 0
+                    ? BigDecimal.ZERO.setScale(2)
+                    : BigDecimal.valueOf(total, 2).divide(BigDecimal.valueOf(rows.length), 2, RoundingMode.HALF_UP));
+        }
+        return result;
+    }
+
+    private static List<BigDecimal> toPercentages(int[] basisPoints) {
+        List<BigDecimal> result = new ArrayList<>(basisPoints.length);
+        for (int value : basisPoints) {
+            result.add(BigDecimal.valueOf(value, 2));
+        }
+        return result;
+    }
+
+    private static LocalDateTime timestamp(Object[] event) {
+        return ((Timestamp) event[2]).toLocalDateTime();
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Persists the state of the replay at each week start it passes, up to a given week and skipping weeks
+     * that are already stored. {@code nextWeek} stays null until the replay has state worth storing.
+     */
+    private final class SnapshotWriter {
+
+        private final AllocationReplay replay;
+        private final LocalDate lastWeek;
+        private final Set<LocalDate> existing;
+        private LocalDate nextWeek;
+
+        private SnapshotWriter(AllocationReplay replay, LocalDate lastWeek, Set<LocalDate> existing) {
+            this.replay = replay;
+            this.lastWeek = lastWeek;
+            this.existing = existing;
+        }
+
+        private void writeUpTo(LocalDateTime instant) {
+            while (nextWeek != null && !nextWeek.isAfter(lastWeek) && !nextWeek.atStartOfDay().isAfter(instant)) {
+                if (!existing.contains(nextWeek)) {
+                    write(nextWeek);
+                }
+                nextWeek = nextWeek.plusWeeks(1);
+            }
+        }
+
+        private void write(LocalDate weekStart) {
+            int[] memberBasisPoints = replay.memberBasisPoints;
+            int count = 0;
+            for (int value : memberBasisPoints) {
+                if (value != 0) {
+                    count++;
+                }
+            }
+            Long[] memberIds = new Long[count];
+            Long[] userIds = new Long[count];
+            Integer[] basisPoints = new Integer[count];
+            int i = 0;
+            for (int member = 0; member < memberBasisPoints.length; member++) {
+                if (memberBasisPoints[member] != 0) {
+                    memberIds[i] = (long) member;
+                    userIds[i] = replay.memberUserIds[member];
+                    basisPoints[i] = memberBasisPoints[member];
+                    i++;
+                }
+            }
+            utilizationSnapshotRepository.insertIfAbsent(weekStart, memberIds, userIds, basisPoints);
+        }
+    }
+
+    /**
+     * Running allocation during a replay: the current workload of every project member and the total of
+     * every user, in hundredths of a percent, held in arrays indexed by id.
+     */
+    static final class AllocationReplay {
+
+        private int[] memberBasisPoints = new int[256];
+        private long[] memberUserIds = new long[256];
+        private int[] userBasisPoints = new int[256];
+
+        void apply(long memberId, long userId, int basisPoints) {
+            int member = Math.toIntExact(memberId);
+            int user = Math.toIntExact(userId);
+            if (member >= memberBasisPoints.length) {
+                int size = Math.max(member + 1, memberBasisPoints.length * 2);
+                memberBasisPoints = Arrays.copyOf(memberBasisPoints, size);
+                memberUserIds = Arrays.copyOf(memberUserIds, size);
+            }
+            if (user >= userBasisPoints.length) {
+                userBasisPoints = Arrays.copyOf(userBasisPoints, Math.max(user + 1, userBasisPoints.length * 2));
+            }
+            userBasisPoints[user] += basisPoints - memberBasisPoints[member];
+            memberBasisPoints[member] = basisPoints;
+            memberUserIds[member] = userId;
+        }
+
+        int userBasisPoints(long userId) {
+            return userId < userBasisPoints.length ? userBasisPoints[(int) userId] : 0;
+        }
+
+        void restore(UtilizationSnapshot snapshot) {
+            for (int i = 0; i < snapshot.getMemberIds().length; i++) {
+                apply(snapshot.getMemberIds()[i], snapshot.getUserIds()[i], snapshot.getBasisPoints()[i]);
+            }
+        }
+    }
+
+    private enum Granularity {
+        WEEK("week"),
+        MONTH("month");
+
+        private final String label;
+
+        Granularity(String label) {
+            this.label = label;
+        }
+
+        static Granularity parse(String value) {
+            for (Granularity granularity : values()) {
+                if (granularity.label.equalsIgnoreCase(value)) {
+                    return granularity;
+                }
+            }
+            throw new IllegalArgumentException("Granularity must be 'week' or 'month'");
+        }
+
+        List<LocalDate> periods(LocalDate from, LocalDate to) {
+            LocalDate current = this == WEEK
+                    ? from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                    : from.withDayOfMonth(1);
+            List<LocalDate> periods = new ArrayList<>();
+            while (!current.isAfter(to) && periods.size() <= MAX_PERIODS) {
+                periods.add(current);
+                current = this == WEEK ? current.plusWeeks(1) : current.plusMonths(1);
+            }
+            return periods;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.viettel.vgov.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+import org.viettel.vgov.dto.request.WorkLogRequestDto;
+import org.viettel.vgov.dto.response.WorkLogImportResponseDto;
+import org.viettel.vgov.dto.response.WorkLogImportResponseDto.RowResult;
+import org.viettel.vgov.dto.response.WorkLogImportResponseDto.Status;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
+import org.viettel.vgov.exception.ResourceNotFoundException;
+import org.viettel.vgov.mapper.WorkLogMapper;
+import org.viettel.vgov.model.Project;
+import org.viettel.vgov.model.User;
+import org.viettel.vgov.model.WorkLog;
+import org.viettel.vgov.repository.ProjectMemberRepository;
+import org.viettel.vgov.repository.ProjectRepository;
+import org.viettel.vgov.repository.UserRepository;
+import org.viettel.vgov.repository.WorkLogRepository;
+import org.viettel.vgov.security.AccessContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk work log import. The whole batch is validated with a handful of set-based queries
+ * (users, projects, assignments, existing hours) and valid rows are inserted with JDBC batching.
+ * Each row is checked by WorkLogService.validateNewWorkLog, as a single new work log is. Invalid
+ * rows are reported individually and do not block the rest of the batch.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class WorkLogImportService {
+
+    private final WorkLogRepository workLogRepository;
+    private final ProjectRepository projectRepository;
+    private final ProjectMemberRepository projectMemberRepository;
+    private final UserRepository userRepository;
+    private final WorkLogMapper workLogMapper;
+    private final WorkLogRollupService workLogRollupService;
+    private final Validator validator;
+    private final AccessContext accessContext;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public static final int MAX_IMPORT_ROWS = 100_000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    public WorkLogImportResponseDto importWorkLogs(List<WorkLogRequestDto> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Import must contain at least one work log");
+        }
+        List<ImportRow> rows = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            rows.add(new ImportRow(i + 1, requests.get(i)));
+        }
+        return importRows(rows);
+    }
+
+    /**
+     * Imports a CSV file with a header row. Recognised columns are projectId, userId, workDate,
+     * hoursWorked, taskFeature and workDescription (in any order); other columns are ignored,
+     * so files produced by the export endpoint can be imported back.
+     */
+    public WorkLogImportResponseDto importWorkLogsCsv(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("CSV file is required");
+        }
+        List<ImportRow> rows = new ArrayList<>();
+        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            CsvReader csv = new CsvReader(reader);
+            List<String> header = csv.next();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty");
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().replace("\uFEFF", "").toLowerCase(Locale.ROOT), i);
+            }
+            for (String required : List.of("projectid", "workdate", "hoursworked", "workdescription")) {
+                if (!columns.containsKey(required)) {
+                    throw new IllegalArgumentException("CSV header is missing column: " + required);
+                }
+            }
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                int rowNumber = rows.size() + 1;
+                if (rowNumber > MAX_IMPORT_ROWS) {
+                    throw new IllegalArgumentException("Import cannot exceed " + MAX_IMPORT_ROWS + " rows");
+                }
+                try {
+                    rows.add(new ImportRow(rowNumber, toRequest(record, columns)));
+                } catch (IllegalArgumentException e) {
+                    rows.add(new ImportRow(rowNumber, e.getMessage()));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read CSV file: " + e.getMessage());
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Import must contain at least one work log");
+        }
+        return importRows(rows);
+    }
+
+    private WorkLogImportResponseDto importRows(List<ImportRow> rows) {
+        if (rows.size() > MAX_IMPORT_ROWS) {
+            throw new IllegalArgumentException("Import cannot exceed " + MAX_IMPORT_ROWS + " rows");
+        }
+
+        User currentUser = accessContext.getCurrentUser();
+
+        // Admin cannot create work logs
+        if (accessContext.isAdmin()) {
+            throw new AccessDeniedException("Admin users cannot create work logs");
+        }
+
+        for (ImportRow row : rows) {
+            if (row.error == null) {
+                row.error = validateFields(row.request);
+            }
+        }
+
+        // Load everything the batch refers to up front
+        Set<Long> projectIds = new HashSet<>();
+        LocalDate minDate = null;
+        LocalDate maxDate = null;
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            projectIds.add(row.request.getProjectId());
+            LocalDate workDate = row.request.getWorkDate();
+            minDate = minDate == null || workDate.isBefore(minDate) ? workDate : minDate;
+            maxDate = maxDate == null || workDate.isAfter(maxDate) ? workDate : maxDate;
+        }
+
+        Map<Long, Project> projects = projectRepository.findAllById(projectIds).stream()
+                .collect(Collectors.toMap(Project::getId, Function.identity()));
+
+        // Only users the caller may log for are loaded and locked; rows for others fail validation
+        Set<Long> userIds = new HashSet<>();
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            Long targetUserId = targetUserId(row.request, currentUser);
+            Project project = projects.get(row.request.getProjectId());
+            if (targetUserId.equals(currentUser.getId()) || (project != null && accessContext.manages(project))) {
+                userIds.add(targetUserId);
+            }
+        }
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        Set<List<Long>> assignments = new HashSet<>();
+        Set<LogKey> existingLogs = new HashSet<>();
+        Map<UserDay, BigDecimal> dailyHours = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            // Held until commit, in id order, so the existing logs read below stay current
+            userIds.stream().sorted().forEach(workLogRepository::lockUserWorkLogs);
+            for (Object[] assignment : projectMemberRepository.findActiveAssignments(userIds, projectIds)) {
+                assignments.add(List.of((Long) assignment[0], (Long) assignment[1]));
+            }
+            for (Object[] log : workLogRepository.findHoursByUserIdsAndDateRange(userIds, minDate, maxDate)) {
+                Long userId = (Long) log[0];
+                LocalDate workDate = (LocalDate) log[2];
+                existingLogs.add(new LogKey(userId, (Long) log[1], workDate));
+                dailyHours.merge(new UserDay(userId, workDate), (BigDecimal) log[3], BigDecimal::add);
+            }
+        }
+
+        // Rows imported earlier in the batch count as logged work for the rows after them
+        WorkLogService.LoggedWork loggedWork = new WorkLogService.LoggedWork() {
+            @Override
+            public boolean hasLog(Long userId, Long projectId, LocalDate workDate) {
+                return existingLogs.contains(new LogKey(userId, projectId, workDate));
+            }
+
+            @Override
+            public BigDecimal hoursOn(Long userId, LocalDate workDate) {
+                return dailyHours.getOrDefault(new UserDay(userId, workDate), BigDecimal.ZERO);
+            }
+        };
+
+        List<WorkLog> workLogs = new ArrayList<>();
+        List<ImportRow> importedRows = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            WorkLogRequestDto request = row.request;
+            Project project = projects.get(request.getProjectId());
+            if (project == null) {
+                row.error = "Project not found with id: " + request.getProjectId();
+                continue;
+            }
+            User targetUser;
+            try {
+                // The target users were locked up front, in id order
+                targetUser = WorkLogService.validateNewWorkLog(request, project, accessContext,
+                        userId -> Optional.ofNullable(users.get(userId)),
+                        (userId, projectId) -> assignments.contains(List.of(projectId, userId)),
+                        userId -> { },
+                        loggedWork);
+            } catch (AccessDeniedException | ResourceNotFoundException | IllegalArgumentException e) {
+                row.error = e.getMessage();
+                continue;
+            }
+
+            existingLogs.add(new LogKey(targetUser.getId(), project.getId(), request.getWorkDate()));
+            dailyHours.merge(new UserDay(targetUser.getId(), request.getWorkDate()), request.getHoursWorked(), BigDecimal::add);
+
+            WorkLog workLog = workLogMapper.toEntity(request);
+            workLog.setUser(targetUser);
+            workLog.setProject(project);
+            workLogs.add(workLog);
+            importedRows.add(row);
+        }
+
+        WorkLogRollupService.Deltas rollupDeltas = new WorkLogRollupService.Deltas();
+        Set<Long> importedProjectIds = new HashSet<>();
+        for (WorkLog workLog : workLogs) {
+            rollupDeltas.add(workLog.getUser().getId(), workLog.getProject().getId(),
+                    workLog.getWorkDate(), workLog.getHoursWorked(), 1);
+            importedProjectIds.add(workLog.getProject().getId());
+        }
+        
+        workLogRepository.insertAll(workLogs, INSERT_BATCH_SIZE);
+        workLogRollupService.apply(rollupDeltas);
+        if (!importedProjectIds.isEmpty()) {
+            eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProjects(importedProjectIds));
+        }
+        for (int i = 0; i < importedRows.size(); i++) {
+            importedRows.get(i).workLogId = workLogs.get(i).getId();
+        }
+
+        List<RowResult> results = rows.stream()
+                .map(row -> row.error == null
+                        ? new RowResult(row.rowNumber, Status.IMPORTED, row.workLogId, null)
+                        : new RowResult(row.rowNumber, Status.FAILED, null, row.error))
+                .collect(Collectors.toList());
+        return new WorkLogImportResponseDto(rows.size(), workLogs.size(), rows.size() - workLogs.size(), results);
+    }
+
+    private String validateFields(WorkLogRequestDto request) {
+        if (request == null) {
+            return "Work log is required";
+        }
+        Set<ConstraintViolation<WorkLogRequestDto>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+
+    private Long targetUserId(WorkLogRequestDto request, User currentUser) {
+        return request.getUserId() != null ? request.getUserId() : currentUser.getId();
+    }
+
+    private WorkLogRequestDto toRequest(List<String> record, Map<String, Integer> columns) {
+        WorkLogRequestDto request = new WorkLogRequestDto();
+        request.setProjectId(parseValue(record, columns, "projectid", Long::valueOf));
+        request.setUserId(parseValue(record, columns, "userid", Long::valueOf));
+        request.setWorkDate(parseValue(record, columns, "workdate", LocalDate::parse));
+        request.setHoursWorked(parseValue(record, columns, "hoursworked", BigDecimal::new));
+        request.setTaskFeature(parseValue(record, columns, "taskfeature", Function.identity()));
+        request.setWorkDescription(parseValue(record, columns, "workdescription", Function.identity()));
+        return request;
+    }
+
+    private <T> T parseValue(List<String> record, Map<String, Integer> columns, String column,
+                             Function<String, T> parser) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size() || record.get(index).isBlank()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid value for " + column + ": " + value);
+        }
+    }
+
+    private static final class ImportRow {
+        private final int rowNumber;
+        private final WorkLogRequestDto request;
+        private String error;
+        private Long workLogId;
+
+        private ImportRow(int rowNumber, WorkLogRequestDto request) {
+            this.rowNumber = rowNumber;
+            this.request = request;
+        }
+
+        private ImportRow(int rowNumber, String error) {
+            this.rowNumber = rowNumber;
+            this.request = null;
+            this.error = error;
+        }
+    }
+
+    private record LogKey(Long userId, Long projectId, LocalDate workDate) {
+    }
+
+    private record UserDay(Long userId, LocalDate workDate) {
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, double-quote escaping, quoted fields may span lines.
+     */
+    private static final class CsvReader {
+        private final Reader reader;
+        private int next;
+
+        private CsvReader(Reader reader) throws IOException {
+            this.reader = reader;
+            this.next = reader.read();
+        }
+
+        private List<String> next() throws IOException {
+            if (next == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (next != -1) {
+                int c = next;
+                next = reader.read();
+                if (quoted) {
+                    if (c == '"' && next == '"') {
+                        field.append('"');
+                        next = reader.read();
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && next == '\n') {
+                        next = reader.read();
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.viettel.vgov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.viettel.vgov.dto.response.RollupStatusResponseDto;
+import org.viettel.vgov.repository.ProjectRepository;
+import org.viettel.vgov.repository.WorkLogDailyRollupRepository;
+import org.viettel.vgov.repository.WorkLogMonthlyRollupRepository;
+import org.viettel.vgov.repository.WorkLogRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the daily and monthly work log rollups and each project's logged hours. Work log writes
+ * report their changes as deltas, which are applied in the caller's transaction with one statement per table.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class WorkLogRollupService {
+    
+    private final WorkLogRepository workLogRepository;
+    private final WorkLogDailyRollupRepository dailyRollupRepository;
+    private final WorkLogMonthlyRollupRepository monthlyRollupRepository;
+    private final ProjectRepository projectRepository;
+    
+    public void recordCreated(Long userId, Long projectId, LocalDate workDate, BigDecimal hours) {
+        apply(new Deltas().add(userId, projectId, workDate, hours, 1));
+    }
+    
+    public void recordDeleted(Long userId, Long projectId, LocalDate workDate, BigDecimal hours) {
+        apply(new Deltas().add(userId, projectId, workDate, hours.negate(), -1));
+    }
+    
+    public void apply(Deltas deltas) {
+        if (deltas.daily.isEmpty()) {
+            return;
+        }
+        
+        Map<Key, Delta> monthly = new LinkedHashMap<>();
+        deltas.daily.forEach((key, delta) -> monthly
+                .computeIfAbsent(new Key(key.userId, key.projectId, key.date.withDayOfMonth(1)), k -> new Delta())
+                .add(delta.hours, delta.count));
+        
+        write(deltas.daily, true);
+        write(monthly, false);
+        writeProjectHours(deltas.daily);
+    }
+    
+    private void writeProjectHours(Map<Key, Delta> deltas) {
+        Map<Long, BigDecimal> byProject = new TreeMap<>();
+        deltas.forEach((key, delta) -> byProject.merge(key.projectId, delta.hours, BigDecimal::add));
+        byProject.values().removeIf(hours -> hours.signum() == 0);
+        if (byProject.isEmpty()) {
+            return;
+        }
+        projectRepository.applyLoggedHoursDeltas(
+                byProject.keySet().toArray(new Long[0]),
+                byProject.values().toArray(new BigDecimal[0]));
+    }
+    
+    private void write(Map<Key, Delta> deltas, boolean daily) {
+        int size = deltas.size();
+        Long[] userIds = new Long[size];
+        Long[] projectIds = new Long[size];
+        LocalDate[] dates = new LocalDate[size];
+        BigDecimal[] hours = new BigDecimal[size];
+        Integer[] counts = new Integer[size];
+        boolean removals = false;
+        int i = 0;
+        for (Map.Entry<Key, Delta> entry : deltas.entrySet()) {
+            userIds[i] = entry.getKey().userId;
+            projectIds[i] = entry.getKey().projectId;
+            dates[i] = entry.getKey().date;
+            hours[i] = entry.getValue().hours;
+            counts[i] = entry.getValue().count;
+            removals |= entry.getValue().count < 0;
+            i++;
+        }
+        
+        if (daily) {
+            dailyRollupRepository.applyDeltas(userIds, projectIds, dates, hours, counts);
+            if (removals) {
+                dailyRollupRepository.deleteEmpty(userIds, projectIds, dates);
+            }
+        } else {
+            monthlyRollupRepository.applyDeltas(userIds, projectIds, dates, hours, counts);
+            if (removals) {
+                monthlyRollupRepository.deleteEmpty(userIds, projectIds, dates);
+            }
+        }
+    }
+    
+    /**
+     * Recomputes both rollup tables and the projects' logged hours from work_logs. Work log writes are
+     * blocked until the rebuild commits.
+     */
+    public RollupStatusResponseDto rebuild() {
+        workLogRepository.lockAgainstWrites();
+        dailyRollupRepository.deleteAllRows();
+        monthlyRollupRepository.deleteAllRows();
+        dailyRollupRepository.rebuildFromWorkLogs();
+        monthlyRollupRepository.rebuildFromWorkLogs();
+        projectRepository.rebuildLoggedHoursFromWorkLogs();
+        return verify();
+    }
+    
+    @Transactional(readOnly = true)
+    public RollupStatusResponseDto verify() {
+        long dailyMismatches = dailyRollupRepository.countMismatches();
+        long monthlyMismatches = monthlyRollupRepository.countMismatches();
+        long projectHoursMismatches = projectRepository.countLoggedHoursMismatches();
+        return new RollupStatusResponseDto(
+                dailyRollupRepository.count(),
+                monthlyRollupRepository.count(),
+                dailyMismatches,
+                monthlyMismatches,
+                projectHoursMismatches,
+                dailyMismatches == 0 && monthlyMismatches == 0 && projectHoursMismatches == 0);
+    }
+    
+    /**
+     * Accumulates work log changes per (user, project, day); repeated keys are merged.
+     */
+    public static class Deltas {
+        
+        private final Map<Key, Delta> daily = new LinkedHashMap<>();
+        
+        public Deltas add(Long userId, Long projectId, LocalDate workDate, BigDecimal hours, int count) {
+            daily.computeIfAbsent(new Key(userId, projectId, workDate), k -> new Delta()).add(hours, count);
+            return this;
+        }
+    }
+    
+    private record Key(Long userId, Long projectId, LocalDate date) {
+    }
+    
+    private static final class Delta {
+        private BigDecimal hours = BigDecimal.ZERO;
+        private int count;
+        
+        private void add(BigDecimal hours, int count) {
+            this.hours = this.hours.add(hours);
+            this.count += count;
+        }
+    }
+}
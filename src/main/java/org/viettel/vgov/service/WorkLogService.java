@@ -1,28 +1,61 @@
 package org.viettel.vgov.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.viettel.vgov.dto.request.WeeklyTimesheetRequestDto;
 import org.viettel.vgov.dto.request.WorkLogRequestDto;
+import org.viettel.vgov.dto.response.PageCursor;
+import org.viettel.vgov.dto.response.PagedResponse;
 import org.viettel.vgov.dto.response.WorkLogResponseDto;
+import org.viettel.vgov.event.AnalyticsDataChangedEvent;
 import org.viettel.vgov.exception.ResourceNotFoundException;
 import org.viettel.vgov.mapper.WorkLogMapper;
 import org.viettel.vgov.model.Project;
 import org.viettel.vgov.model.User;
 import org.viettel.vgov.model.WorkLog;
+import org.viettel.vgov.repository.ProjectMemberRepository;
 import org.viettel.vgov.repository.ProjectRepository;
 import org.viettel.vgov.repository.UserRepository;
 import org.viettel.vgov.repository.WorkLogRepository;
-import org.viettel.vgov.security.UserPrincipal;
+import org.viettel.vgov.repository.WorkLogSpecifications;
+import org.viettel.vgov.security.AccessContext;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -32,200 +65,291 @@ public class WorkLogService {
     private final WorkLogRepository workLogRepository;
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
+    private final ProjectMemberRepository projectMemberRepository;
     private final WorkLogMapper workLogMapper;
+    private final WorkLogRollupService workLogRollupService;
+    private final AccessContext accessContext;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
     
-    public List<WorkLogResponseDto> getAllWorkLogs() {
-        return getAllWorkLogs(null, null, null, null, null, null, null, null, "workDate", "desc");
+    private static final BigDecimal MAX_HOURS_PER_DAY = new BigDecimal("24");
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final Object[] EXPORT_CSV_HEADER = {"id", "userId", "userFullName", "projectId", "projectName",
+            "workDate", "hoursWorked", "taskFeature", "workDescription", "createdAt", "updatedAt"};
+    
+    public PagedResponse<WorkLogResponseDto> getAllWorkLogs(String search, Long projectId, Long userId,
+            String workDateFrom, String workDateTo, Double minHours, Double maxHours,
+            String taskFeature, String sortBy, String sortDir, int page, int size) {
+        boolean relevance = isRelevanceSort(sortBy, search);
+        Specification<WorkLog> filters = buildSpecification(search, projectId, userId,
+                workDateFrom, workDateTo, minHours, maxHours, taskFeature);
+        Specification<WorkLog> specification = relevance
+                ? filters.and(WorkLogSpecifications.orderByRelevance(search)) : filters;
+        Sort sort = relevance ? Sort.unsorted() : buildSort(sortBy, sortDir);
+        Pageable pageable = PageRequest.of(page, size, sort);
+        
+        Page<WorkLogResponseDto> workLogs = workLogRepository.findAll(specification, pageable)
+                .map(workLogMapper::toResponseDto);
+        return PagedResponse.of(workLogs);
     }
     
-    public List<WorkLogResponseDto> getAllWorkLogs(String search, Long projectId, Long userId,
+    /**
+     * Cursor (keyset) variant of {@link #getAllWorkLogs}: every page is a single range scan
+     * continuing after the given cursor, without a count query.
+     */
+    public PagedResponse<WorkLogResponseDto> getWorkLogsAfter(String search, Long projectId, Long userId,
             String workDateFrom, String workDateTo, Double minHours, Double maxHours,
-            String taskFeature, String sortBy, String sortDir) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+            String taskFeature, String sortBy, String sortDir, String after, Integer limit) {
+        if ("relevance".equalsIgnoreCase(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination does not support sorting by relevance");
+        }
+        String sortProperty = resolveSortProperty(sortBy);
+        if ("taskFeature".equals(sortProperty)) {
+            // Task feature is nullable and cannot serve as a keyset
+            throw new IllegalArgumentException("Cursor pagination does not support sorting by task");
+        }
+        Sort.Direction direction = resolveSortDirection(sortDir);
+        int pageSize = PageCursor.resolveLimit(limit);
+        
+        Specification<WorkLog> specification = buildSpecification(search, projectId, userId,
+                workDateFrom, workDateTo, minHours, maxHours, taskFeature);
+        if (after != null && !after.isEmpty()) {
+            PageCursor cursor = PageCursor.decode(after);
+            specification = specification.and(WorkLogSpecifications.after(
+                    sortProperty, direction, parseSortKey(sortProperty, cursor), cursor.getId()));
+        }
         
-        List<WorkLog> workLogs;
+        Sort sort = Sort.by(direction, sortProperty).and(Sort.by(direction, "id"));
+        // Fetch one extra row to know whether another page exists
+        List<WorkLog> workLogs = workLogRepository.findBy(specification, query -> query
+                .sortBy(sort)
+                .limit(pageSize + 1)
+                .project("user", "project")
+                .all());
+        
+        String nextCursor = null;
+        if (workLogs.size() > pageSize) {
+            workLogs = workLogs.subList(0, pageSize);
+            WorkLog last = workLogs.get(pageSize - 1);
+            nextCursor = new PageCursor(extractSortKey(sortProperty, last), last.getId()).encode();
+        }
         
-        switch (currentUser.getRole()) {
-            case admin:
-                // Admin can see all work logs
-                workLogs = workLogRepository.findAll();
-                break;
-            case pm:
-                // PM can see work logs for projects they manage
-                workLogs = workLogRepository.findWorkLogsByPmEmail(currentUser.getEmail());
+        return PagedResponse.ofCursor(workLogs.stream()
+                .map(workLogMapper::toResponseDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+    
+    /**
+     * Prepares a streaming export with the same role scope, filters and sorting as {@link #getAllWorkLogs}.
+     * The caller is resolved up front; rows are read through a forward-only cursor in a read-only
+     * transaction when the response body is written, so memory stays flat regardless of the row count.
+     */
+    public StreamingResponseBody exportWorkLogs(String format, String search, Long projectId, Long userId,
+            String workDateFrom, String workDateTo, Double minHours, Double maxHours,
+            String taskFeature, String sortBy, String sortDir) {
+        boolean csv;
+        switch (format.toLowerCase()) {
+            case "csv":
+                csv = true;
                 break;
-            case dev:
-            case ba:
-            case test:
-                // Employee can see only their own work logs
-                workLogs = workLogRepository.findByUserId(currentUser.getId());
+            case "ndjson":
+                csv = false;
                 break;
             default:
-                throw new AccessDeniedException("Access denied");
+                throw new IllegalArgumentException("Unsupported export format: " + format);
         }
         
-        // Apply filters
-        workLogs = applyFilters(workLogs, search, projectId, userId, workDateFrom, workDateTo,
-                               minHours, maxHours, taskFeature);
-        
-        // Apply sorting
-        workLogs = applySorting(workLogs, sortBy, sortDir);
-        
-        return workLogs.stream()
-                .map(workLogMapper::toResponseDto)
-                .collect(Collectors.toList());
-    }
-    
-    private List<WorkLog> applyFilters(List<WorkLog> workLogs, String search, Long projectId, Long userId,
-                                      String workDateFrom, String workDateTo, Double minHours, Double maxHours,
-                                      String taskFeature) {
-        return workLogs.stream()
-                .filter(workLog -> {
-                    // Search filter (search in task feature and work description)
-                    if (search != null && !search.trim().isEmpty()) {
-                        String searchLower = search.toLowerCase();
-                        boolean matchesTask = workLog.getTaskFeature() != null &&
-                                            workLog.getTaskFeature().toLowerCase().contains(searchLower);
-                        boolean matchesDescription = workLog.getWorkDescription() != null &&
-                                             workLog.getWorkDescription().toLowerCase().contains(searchLower);
-                        if (!matchesTask && !matchesDescription) {
-                            return false;
-                        }
-                    }
-                    
-                    // Project filter
-                    if (projectId != null && !projectId.equals(workLog.getProject().getId())) {
-                        return false;
-                    }
-                    
-                    // User filter
-                    if (userId != null && !userId.equals(workLog.getUser().getId())) {
-                        return false;
-                    }
-                    
-                    // Date range filter
-                    if (workDateFrom != null) {
-                        try {
-                            LocalDate fromDate = LocalDate.parse(workDateFrom);
-                            if (workLog.getWorkDate().isBefore(fromDate)) {
-                                return false;
-                            }
-                        } catch (Exception e) {
-                            // Invalid date format, skip filter
-                        }
-                    }
-                    
-                    if (workDateTo != null) {
-                        try {
-                            LocalDate toDate = LocalDate.parse(workDateTo);
-                            if (workLog.getWorkDate().isAfter(toDate)) {
-                                return false;
-                            }
-                        } catch (Exception e) {
-                            // Invalid date format, skip filter
-                        }
-                    }
-                    
-                    // Hours range filter
-                    if (minHours != null && workLog.getHoursWorked().doubleValue() < minHours) {
-                        return false;
+        boolean relevance = isRelevanceSort(sortBy, search);
+        Specification<WorkLog> filters = buildSpecification(search, projectId, userId,
+                workDateFrom, workDateTo, minHours, maxHours, taskFeature);
+        Specification<WorkLog> specification = relevance
+                ? filters.and(WorkLogSpecifications.orderByRelevance(search)) : filters;
+        Sort sort = relevance ? Sort.unsorted() : buildSort(sortBy, sortDir);
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<WorkLogResponseDto> rows = workLogRepository.streamAll(specification, sort, EXPORT_FETCH_SIZE)) {
+                    if (csv) {
+                        writeCsvLine(writer, EXPORT_CSV_HEADER);
+                        writer.flush();
                     }
-                    
-                    if (maxHours != null && workLog.getHoursWorked().doubleValue() > maxHours) {
-                        return false;
-                    }
-                    
-                    // Task feature filter
-                    if (taskFeature != null && !taskFeature.trim().isEmpty()) {
-                        String featureLower = taskFeature.toLowerCase();
-                        boolean matchesTask = workLog.getTaskFeature() != null &&
-                                            workLog.getTaskFeature().toLowerCase().contains(featureLower);
-                        if (!matchesTask) {
-                            return false;
+                    Iterator<WorkLogResponseDto> iterator = rows.iterator();
+                    while (iterator.hasNext()) {
+                        WorkLogResponseDto row = iterator.next();
+                        if (csv) {
+                            writeCsvLine(writer, row.getId(), row.getUserId(), row.getUserFullName(),
+                                    row.getProjectId(), row.getProjectName(), row.getWorkDate(),
+                                    row.getHoursWorked(), row.getTaskFeature(), row.getWorkDescription(),
+                                    row.getCreatedAt(), row.getUpdatedAt());
+                        } else {
+                            writer.write(objectMapper.writeValueAsString(row));
+                            writer.write('\n');
                         }
                     }
-                    
-                    return true;
-                })
-                .collect(Collectors.toList());
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
     }
     
-    private List<WorkLog> applySorting(List<WorkLog> workLogs, String sortBy, String sortDir) {
-        if (sortBy == null || sortBy.trim().isEmpty()) {
-            sortBy = "workDate";
+    private void writeCsvLine(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(toCsvValue(values[i]));
+        }
+        writer.write("\r\n");
+    }
+    
+    private String toCsvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+    
+    private Specification<WorkLog> buildSpecification(String search, Long projectId, Long userId,
+                                                      String workDateFrom, String workDateTo, Double minHours, Double maxHours,
+                                                      String taskFeature) {
+        List<Specification<WorkLog>> specifications = new ArrayList<>();
+        
+        // Role scope: admin sees all, PM sees managed projects, employees see their own logs
+        specifications.add(WorkLogSpecifications.visibleTo(
+                accessContext.getRole(), accessContext.getUserId(), accessContext.getEmail()));
+        
+        // Full-text search in task feature and work description
+        if (search != null && !search.trim().isEmpty()) {
+            specifications.add(WorkLogSpecifications.matchesSearch(search));
+        }
+        
+        if (projectId != null) {
+            specifications.add(WorkLogSpecifications.hasProjectId(projectId));
+        }
+        
+        if (userId != null) {
+            specifications.add(WorkLogSpecifications.hasUserId(userId));
+        }
+        
+        // Date range filter, invalid date formats are ignored
+        LocalDate fromDate = parseDate(workDateFrom);
+        if (fromDate != null) {
+            specifications.add(WorkLogSpecifications.workDateFrom(fromDate));
+        }
+        
+        LocalDate toDate = parseDate(workDateTo);
+        if (toDate != null) {
+            specifications.add(WorkLogSpecifications.workDateTo(toDate));
+        }
+        
+        // Hours range filter
+        if (minHours != null) {
+            specifications.add(WorkLogSpecifications.minHours(BigDecimal.valueOf(minHours)));
+        }
+        
+        if (maxHours != null) {
+            specifications.add(WorkLogSpecifications.maxHours(BigDecimal.valueOf(maxHours)));
+        }
+        
+        if (taskFeature != null && !taskFeature.trim().isEmpty()) {
+            specifications.add(WorkLogSpecifications.taskFeatureContains(taskFeature));
         }
         
+        return Specification.allOf(specifications);
+    }
+    
+    private LocalDate parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    private Sort buildSort(String sortBy, String sortDir) {
+        Sort.Direction direction = resolveSortDirection(sortDir);
+        // Id as tie-breaker keeps page boundaries stable
+        return Sort.by(direction, resolveSortProperty(sortBy)).and(Sort.by(direction, "id"));
+    }
+    
+    // Relevance ordering only applies when there is a search term; otherwise the default sort is used
+    private boolean isRelevanceSort(String sortBy, String search) {
+        return "relevance".equalsIgnoreCase(sortBy) && search != null && !search.trim().isEmpty();
+    }
+    
+    private Sort.Direction resolveSortDirection(String sortDir) {
         if (sortDir == null || sortDir.trim().isEmpty()) {
             sortDir = "desc";
         }
-        
-        Comparator<WorkLog> comparator;
+        return "desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC;
+    }
+    
+    private String resolveSortProperty(String sortBy) {
+        if (sortBy == null || sortBy.trim().isEmpty()) {
+            sortBy = "workDate";
+        }
         
         switch (sortBy.toLowerCase()) {
-            case "workdate":
-                comparator = Comparator.comparing(WorkLog::getWorkDate);
-                break;
             case "hours":
-                comparator = Comparator.comparing(WorkLog::getHoursWorked);
-                break;
+                return "hoursWorked";
             case "project":
-                comparator = Comparator.<WorkLog, String>comparing(wl -> wl.getProject().getProjectName());
-                break;
+                return "project.projectName";
             case "user":
-                comparator = Comparator.<WorkLog, String>comparing(wl -> wl.getUser().getFullName());
-                break;
+                return "user.fullName";
             case "task":
-                comparator = Comparator.comparing(WorkLog::getTaskFeature, Comparator.nullsLast(String::compareTo));
-                break;
+                return "taskFeature";
+            case "workdate":
             default:
-                comparator = Comparator.comparing(WorkLog::getWorkDate);
-                break;
+                return "workDate";
         }
-        
-        if ("desc".equalsIgnoreCase(sortDir)) {
-            comparator = comparator.reversed();
+    }
+    
+    private Comparable<?> parseSortKey(String sortProperty, PageCursor cursor) {
+        switch (sortProperty) {
+            case "workDate":
+                return cursor.parseKey(LocalDate::parse);
+            case "hoursWorked":
+                return cursor.parseKey(BigDecimal::new);
+            default:
+                return cursor.getKey();
+        }
+    }
+    
+    private String extractSortKey(String sortProperty, WorkLog workLog) {
+        switch (sortProperty) {
+            case "workDate":
+                return workLog.getWorkDate().toString();
+            case "hoursWorked":
+                return workLog.getHoursWorked().toPlainString();
+            case "project.projectName":
+                return workLog.getProject().getProjectName();
+            case "user.fullName":
+                return workLog.getUser().getFullName();
+            default:
+                throw new IllegalArgumentException("Unsupported sort property for cursor pagination: " + sortProperty);
         }
-        
-        return workLogs.stream()
-                .sorted(comparator)
-                .collect(Collectors.toList());
     }
     
     public List<WorkLogResponseDto> getWorkLogsByUserId(Long userId) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        User targetUser = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-        
-        // Check access permission
-        boolean hasAccess = false;
-        switch (currentUser.getRole()) {
-            case admin:
-                hasAccess = true;
-                break;
-            case pm:
-                // PM can view work logs for users in their projects
-                List<Project> pmProjects = projectRepository.findByPmEmail(currentUser.getEmail());
-                hasAccess = pmProjects.stream()
-                        .anyMatch(project -> projectRepository.findProjectsByUserId(userId)
-                                .stream()
-                                .anyMatch(userProject -> userProject.getId().equals(project.getId())));
-                break;
-            case dev:
-            case ba:
-            case test:
-                // Employee can only see their own work logs
-                hasAccess = currentUser.getId().equals(userId);
-                break;
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with id: " + userId);
         }
         
-        if (!hasAccess) {
+        if (!accessContext.canAccessUserWorkLogs(userId)) {
             throw new AccessDeniedException("Access denied to view work logs for this user");
         }
         
@@ -236,29 +360,22 @@ public class WorkLogService {
     }
     
     public List<WorkLogResponseDto> getWorkLogsByProjectId(Long projectId) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + projectId));
         
         // Check access permission
         boolean hasAccess = false;
-        switch (currentUser.getRole()) {
+        switch (accessContext.getRole()) {
             case admin:
                 hasAccess = true;
                 break;
             case pm:
-                hasAccess = project.getPmEmail().equals(currentUser.getEmail());
+                hasAccess = accessContext.manages(project);
                 break;
             case dev:
             case ba:
             case test:
-                hasAccess = projectRepository.findProjectsByUserId(currentUser.getId())
-                        .stream()
-                        .anyMatch(p -> p.getId().equals(projectId));
+                hasAccess = accessContext.isAssignedTo(projectId);
                 break;
         }
         
@@ -273,116 +390,275 @@ public class WorkLogService {
     }
     
     public WorkLogResponseDto createWorkLog(WorkLogRequestDto requestDto) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
         // Admin cannot create work logs
-        if (currentUser.getRole() == User.Role.admin) {
+        if (accessContext.isAdmin()) {
             throw new AccessDeniedException("Admin users cannot create work logs");
         }
         
         Project project = projectRepository.findById(requestDto.getProjectId())
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found with id: " + requestDto.getProjectId()));
         
-        // Determine target user for the work log
+        User targetUser = validateNewWorkLog(requestDto, project, accessContext, userRepository::findById,
+                (userId, projectId) -> userId.equals(accessContext.getUserId())
+                        ? accessContext.isAssignedTo(projectId)
+                        : !projectMemberRepository.findActiveAssignments(List.of(userId), List.of(projectId)).isEmpty(),
+                workLogRepository::lockUserWorkLogs,
+                new LoggedWork() {
+                    @Override
+                    public boolean hasLog(Long userId, Long projectId, LocalDate workDate) {
+                        return workLogRepository.findByUserIdAndProjectIdAndWorkDate(userId, projectId, workDate).isPresent();
+                    }
+                    
+                    @Override
+                    public BigDecimal hoursOn(Long userId, LocalDate workDate) {
+                        BigDecimal hours = workLogRepository.getTotalHoursByUserAndDateRange(userId, workDate, workDate);
+                        return hours != null ? hours : BigDecimal.ZERO;
+                    }
+                });
+        
+        WorkLog workLog = workLogMapper.toEntity(requestDto);
+        workLog.setUser(targetUser);
+        workLog.setProject(project);
+        
+        WorkLog savedWorkLog = workLogRepository.save(workLog);
+        workLogRollupService.recordCreated(targetUser.getId(), project.getId(),
+                savedWorkLog.getWorkDate(), savedWorkLog.getHoursWorked());
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(project.getId()));
+        return workLogMapper.toResponseDto(savedWorkLog);
+    }
+    
+    /**
+     * Checks a new work log and returns the user it is for. createWorkLog and the bulk import both go
+     * through it, so either accepts or rejects an entry the same way. Only PMs log for other users, on
+     * projects they manage; a userId naming the caller stands for the caller's own log. The target must
+     * be assigned to the project, have no log for it that day, and stay within 24 hours that day across
+     * projects. The import answers the lookups from what it loaded for the whole batch.
+     * <p>
+     * lockTargetUser is called once the caller is known to be allowed to log for the target user, and
+     * before the logged work is read, so nobody can hold up the writes of users they may not log for.
+     */
+    static User validateNewWorkLog(WorkLogRequestDto requestDto, Project project, AccessContext accessContext,
+                                   Function<Long, Optional<User>> findUser, BiPredicate<Long, Long> isAssigned,
+                                   Consumer<Long> lockTargetUser, LoggedWork loggedWork) {
+        boolean forOtherUser = requestDto.getUserId() != null && !requestDto.getUserId().equals(accessContext.getUserId());
         User targetUser;
-        if (requestDto.getUserId() != null) {
-            // PM is creating work log for another user
-            if (currentUser.getRole() != User.Role.pm) {
+        if (forOtherUser) {
+            if (!accessContext.isPm()) {
                 throw new AccessDeniedException("Only Project Managers can create work logs for other users");
             }
-            
-            // Check if current user is the PM of this project
-            if (!project.getPmEmail().equals(currentUser.getEmail())) {
+            if (!accessContext.manages(project)) {
                 throw new AccessDeniedException("You can only create work logs for projects you manage");
             }
-            
-            targetUser = userRepository.findById(requestDto.getUserId())
+            targetUser = findUser.apply(requestDto.getUserId())
                     .orElseThrow(() -> new ResourceNotFoundException("Target user not found with id: " + requestDto.getUserId()));
-            
-            // Check if target user is assigned to this project
-            boolean isTargetUserProjectMember = projectRepository.findProjectsByUserId(targetUser.getId())
-                    .stream()
-                    .anyMatch(p -> p.getId().equals(requestDto.getProjectId()));
-            
-            if (!isTargetUserProjectMember) {
-                throw new AccessDeniedException("Target user is not assigned to this project");
-            }
-            
         } else {
-            // User is creating work log for themselves
-            targetUser = currentUser;
-            
-            // Check if user is assigned to this project
-            boolean isProjectMember = projectRepository.findProjectsByUserId(currentUser.getId())
-                    .stream()
-                    .anyMatch(p -> p.getId().equals(requestDto.getProjectId()));
-            
-            if (!isProjectMember) {
-                throw new AccessDeniedException("You are not assigned to this project");
-            }
+            targetUser = accessContext.getCurrentUser();
+        }
+        lockTargetUser.accept(targetUser.getId());
+        
+        if (!isAssigned.test(targetUser.getId(), project.getId())) {
+            throw new AccessDeniedException(forOtherUser
+                    ? "Target user is not assigned to this project" : "You are not assigned to this project");
         }
         
-        // Check if work log already exists for this user, project, and date
-        if (workLogRepository.findByUserIdAndProjectIdAndWorkDate(
-                targetUser.getId(), requestDto.getProjectId(), requestDto.getWorkDate()).isPresent()) {
+        if (requestDto.getWorkDate().isBefore(project.getStartDate()) ||
+            (project.getEndDate() != null && requestDto.getWorkDate().isAfter(project.getEndDate()))) {
+            throw new IllegalArgumentException("Work date must be within project timeline");
+        }
+        
+        if (loggedWork.hasLog(targetUser.getId(), project.getId(), requestDto.getWorkDate())) {
             throw new IllegalArgumentException("Work log already exists for this date and project");
         }
         
-        // Validate hours worked
-        if (requestDto.getHoursWorked().compareTo(new BigDecimal("24")) > 0) {
+        BigDecimal dailyTotal = loggedWork.hoursOn(targetUser.getId(), requestDto.getWorkDate()).add(requestDto.getHoursWorked());
+        if (dailyTotal.compareTo(MAX_HOURS_PER_DAY) > 0) {
             throw new IllegalArgumentException("Hours worked cannot exceed 24 hours per day");
         }
+        return targetUser;
+    }
+    
+    /**
+     * Work already logged, as seen by {@link #validateNewWorkLog}.
+     */
+    interface LoggedWork {
         
-        // Validate work date is within project timeline
-        if (requestDto.getWorkDate().isBefore(project.getStartDate()) ||
-            (project.getEndDate() != null && requestDto.getWorkDate().isAfter(project.getEndDate()))) {
-            throw new IllegalArgumentException("Work date must be within project timeline");
+        boolean hasLog(Long userId, Long projectId, LocalDate workDate);
+        
+        BigDecimal hoursOn(Long userId, LocalDate workDate);
+    }
+    
+    /**
+     * Applies a project x day grid for one ISO week (e.g. 2024-W05) in a single transaction.
+     * Filled cells are upserted through the work_logs unique constraint; cleared cells are deleted.
+     * Projects not listed in the grid are left untouched.
+     */
+    public List<WorkLogResponseDto> saveWeeklyTimesheet(String isoWeek, WeeklyTimesheetRequestDto requestDto) {
+        LocalDate weekStart = parseIsoWeek(isoWeek);
+        LocalDate weekEnd = weekStart.plusDays(6);
+        
+        // Admin cannot create work logs
+        if (accessContext.isAdmin()) {
+            throw new AccessDeniedException("Admin users cannot create work logs");
         }
         
-        WorkLog workLog = workLogMapper.toEntity(requestDto);
-        workLog.setUser(targetUser);
-        workLog.setProject(project);
+        Long targetUserId = requestDto.getUserId() != null ? requestDto.getUserId() : accessContext.getUserId();
+        boolean forOtherUser = !targetUserId.equals(accessContext.getUserId());
+        if (forOtherUser && !accessContext.isPm()) {
+            throw new AccessDeniedException("Only Project Managers can create work logs for other users");
+        }
+        if (forOtherUser && !userRepository.existsById(targetUserId)) {
+            throw new ResourceNotFoundException("Target user not found with id: " + targetUserId);
+        }
         
-        WorkLog savedWorkLog = workLogRepository.save(workLog);
-        return workLogMapper.toResponseDto(savedWorkLog);
+        Set<Long> projectIds = new HashSet<>();
+        for (WeeklyTimesheetRequestDto.Row row : requestDto.getRows()) {
+            if (!projectIds.add(row.getProjectId())) {
+                throw new IllegalArgumentException("Project " + row.getProjectId() + " appears more than once in the timesheet");
+            }
+        }
+        Map<Long, Project> projects = projectRepository.findAllById(projectIds).stream()
+                .collect(Collectors.toMap(Project::getId, Function.identity()));
+        Set<Long> assignedProjectIds = projectMemberRepository.findActiveAssignments(List.of(targetUserId), projectIds).stream()
+                .map(assignment -> (Long) assignment[0])
+                .collect(Collectors.toSet());
+        
+        // Held until commit, so the cells read below are those the upsert and delete replace
+        workLogRepository.lockUserWorkLogs(targetUserId);
+        
+        // Hours already logged this week on projects outside the grid count towards the daily cap
+        Map<LocalDate, BigDecimal> dailyHours = new HashMap<>();
+        Map<Long, Map<LocalDate, BigDecimal>> existingCells = new HashMap<>();
+        for (Object[] log : workLogRepository.findHoursByUserIdsAndDateRange(List.of(targetUserId), weekStart, weekEnd)) {
+            if (projectIds.contains((Long) log[1])) {
+                existingCells.computeIfAbsent((Long) log[1], id -> new HashMap<>()).put((LocalDate) log[2], (BigDecimal) log[3]);
+            } else {
+                dailyHours.merge((LocalDate) log[2], (BigDecimal) log[3], BigDecimal::add);
+            }
+        }
+        WorkLogRollupService.Deltas rollupDeltas = new WorkLogRollupService.Deltas();
+        
+        List<Long> upsertProjectIds = new ArrayList<>();
+        List<LocalDate> upsertDates = new ArrayList<>();
+        List<BigDecimal> upsertHours = new ArrayList<>();
+        List<String> upsertTaskFeatures = new ArrayList<>();
+        List<String> upsertDescriptions = new ArrayList<>();
+        List<Long> clearedProjectIds = new ArrayList<>();
+        List<LocalDate> clearedDates = new ArrayList<>();
+        
+        for (WeeklyTimesheetRequestDto.Row row : requestDto.getRows()) {
+            Project project = projects.get(row.getProjectId());
+            if (project == null) {
+                throw new ResourceNotFoundException("Project not found with id: " + row.getProjectId());
+            }
+            if (forOtherUser && !accessContext.manages(project)) {
+                throw new AccessDeniedException("You can only create work logs for projects you manage");
+            }
+            if (!assignedProjectIds.contains(project.getId())) {
+                throw new AccessDeniedException(forOtherUser
+                        ? "Target user is not assigned to project " + project.getId()
+                        : "You are not assigned to project " + project.getId());
+            }
+            // A blank description keeps the stored one; a new cell needs one, like a single work log does
+            String workDescription = row.getWorkDescription() != null && !row.getWorkDescription().isBlank()
+                    ? row.getWorkDescription() : null;
+            
+            for (DayOfWeek day : DayOfWeek.values()) {
+                LocalDate workDate = weekStart.plusDays(day.ordinal());
+                BigDecimal hours = row.getHours() != null ? row.getHours().get(day) : null;
+                BigDecimal existingHours = existingCells.getOrDefault(project.getId(), Map.of()).get(workDate);
+                if (hours == null || hours.signum() == 0) {
+                    clearedProjectIds.add(project.getId());
+                    clearedDates.add(workDate);
+                    if (existingHours != null) {
+                        rollupDeltas.add(targetUserId, project.getId(), workDate, existingHours.negate(), -1);
+                    }
+                    continue;
+                }
+                if (hours.signum() < 0 || hours.compareTo(MAX_HOURS_PER_DAY) > 0) {
+                    throw new IllegalArgumentException("Hours worked must be between 0 and 24 (project " + project.getId() + ", " + workDate + ")");
+                }
+                if (workDate.isBefore(project.getStartDate()) ||
+                    (project.getEndDate() != null && workDate.isAfter(project.getEndDate()))) {
+                    throw new IllegalArgumentException("Work date must be within project timeline (project " + project.getId() + ", " + workDate + ")");
+                }
+                if (existingHours == null && workDescription == null) {
+                    throw new IllegalArgumentException("Work description is required (project " + project.getId() + ", " + workDate + ")");
+                }
+                dailyHours.merge(workDate, hours, BigDecimal::add);
+                rollupDeltas.add(targetUserId, project.getId(), workDate,
+                        existingHours != null ? hours.subtract(existingHours) : hours, existingHours != null ? 0 : 1);
+                upsertProjectIds.add(project.getId());
+                upsertDates.add(workDate);
+                upsertHours.add(hours);
+                upsertTaskFeatures.add(row.getTaskFeature());
+                upsertDescriptions.add(workDescription);
+            }
+        }
+        
+        dailyHours.forEach((workDate, total) -> {
+            if (total.compareTo(MAX_HOURS_PER_DAY) > 0) {
+                throw new IllegalArgumentException("Hours worked cannot exceed 24 hours per day (" + workDate + ")");
+            }
+        });
+        
+        if (!clearedProjectIds.isEmpty()) {
+            workLogRepository.deleteCells(targetUserId, clearedProjectIds.toArray(new Long[0]), clearedDates.toArray(new LocalDate[0]));
+        }
+        if (!upsertProjectIds.isEmpty()) {
+            workLogRepository.upsertCells(targetUserId, upsertProjectIds.toArray(new Long[0]), upsertDates.toArray(new LocalDate[0]),
+                    upsertHours.toArray(new BigDecimal[0]), upsertTaskFeatures.toArray(new String[0]),
+                    upsertDescriptions.toArray(new String[0]));
+        }
+        workLogRollupService.apply(rollupDeltas);
+        
+        Set<Long> changedProjectIds = new HashSet<>(upsertProjectIds);
+        changedProjectIds.addAll(clearedProjectIds);
+        if (!changedProjectIds.isEmpty()) {
+            eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProjects(changedProjectIds));
+        }
+        
+        return workLogRepository.findByUserIdAndDateRangeWithDetails(targetUserId, weekStart, weekEnd).stream()
+                .map(workLogMapper::toResponseDto)
+                .collect(Collectors.toList());
+    }
+    
+    private LocalDate parseIsoWeek(String isoWeek) {
+        try {
+            return LocalDate.parse(isoWeek + "-1", DateTimeFormatter.ISO_WEEK_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid ISO week: " + isoWeek + " (expected format 2024-W05)");
+        }
     }
     
     public WorkLogResponseDto updateWorkLog(Long id, WorkLogRequestDto requestDto) {
+        // Locked before loading, so the hours the rollup delta subtracts are current
+        workLogRepository.findUserIdById(id).ifPresent(workLogRepository::lockUserWorkLogs);
         WorkLog workLog = workLogRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Work log not found with id: " + id));
         
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
         // Admin cannot update work logs
-        if (currentUser.getRole() == User.Role.admin) {
+        if (accessContext.isAdmin()) {
             throw new AccessDeniedException("Admin users cannot update work logs");
         }
         
         // Check if user can update this work log
         boolean canUpdate = false;
-        if (workLog.getUser().getId().equals(currentUser.getId())) {
+        if (workLog.getUser().getId().equals(accessContext.getUserId())) {
             // User can update their own work log
             canUpdate = true;
-        } else if (currentUser.getRole() == User.Role.pm) {
+        } else if (accessContext.manages(workLog.getProject())) {
             // PM can update work logs for users in their projects
-            Project project = workLog.getProject();
-            if (project.getPmEmail().equals(currentUser.getEmail())) {
-                canUpdate = true;
-            }
+            canUpdate = true;
         }
         
         if (!canUpdate) {
             throw new AccessDeniedException("You can only update your own work logs or work logs of employees in projects you manage");
         }
         
-        // Validate hours worked
-        if (requestDto.getHoursWorked().compareTo(new BigDecimal("24")) > 0) {
+        // The day's total across projects, as for a new work log; read under the user lock taken above
+        BigDecimal dailyTotal = workLogRepository.getTotalHoursByUserAndDateExcluding(
+                workLog.getUser().getId(), requestDto.getWorkDate(), workLog.getId()).add(requestDto.getHoursWorked());
+        if (dailyTotal.compareTo(MAX_HOURS_PER_DAY) > 0) {
             throw new IllegalArgumentException("Hours worked cannot exceed 24 hours per day");
         }
         
@@ -401,6 +677,10 @@ public class WorkLogService {
             }
         }
         
+        WorkLogRollupService.Deltas rollupDeltas = new WorkLogRollupService.Deltas()
+                .add(workLog.getUser().getId(), project.getId(), workLog.getWorkDate(), workLog.getHoursWorked().negate(), -1)
+                .add(workLog.getUser().getId(), project.getId(), requestDto.getWorkDate(), requestDto.getHoursWorked(), 1);
+        
         // Update work log fields
         workLog.setWorkDate(requestDto.getWorkDate());
         workLog.setHoursWorked(requestDto.getHoursWorked());
@@ -408,34 +688,29 @@ public class WorkLogService {
         workLog.setWorkDescription(requestDto.getWorkDescription());
         
         WorkLog savedWorkLog = workLogRepository.save(workLog);
+        workLogRollupService.apply(rollupDeltas);
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(project.getId()));
         return workLogMapper.toResponseDto(savedWorkLog);
     }
     
     public void deleteWorkLog(Long id) {
+        workLogRepository.findUserIdById(id).ifPresent(workLogRepository::lockUserWorkLogs);
         WorkLog workLog = workLogRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Work log not found with id: " + id));
         
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User currentUser = userRepository.findById(userPrincipal.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
         // Admin cannot delete work logs
-        if (currentUser.getRole() == User.Role.admin) {
+        if (accessContext.isAdmin()) {
             throw new AccessDeniedException("Admin users cannot delete work logs");
         }
         
         // Check if user can delete this work log
         boolean canDelete = false;
-        if (workLog.getUser().getId().equals(currentUser.getId())) {
+        if (workLog.getUser().getId().equals(accessContext.getUserId())) {
             // User can delete their own work log
             canDelete = true;
-        } else if (currentUser.getRole() == User.Role.pm) {
+        } else if (accessContext.manages(workLog.getProject())) {
             // PM can delete work logs for users in their projects
-            Project project = workLog.getProject();
-            if (project.getPmEmail().equals(currentUser.getEmail())) {
-                canDelete = true;
-            }
+            canDelete = true;
         }
         
         if (!canDelete) {
@@ -443,29 +718,12 @@ public class WorkLogService {
         }
         
         workLogRepository.delete(workLog);
+        workLogRollupService.recordDeleted(workLog.getUser().getId(), workLog.getProject().getId(),
+                workLog.getWorkDate(), workLog.getHoursWorked());
+        eventPublisher.publishEvent(AnalyticsDataChangedEvent.ofProject(workLog.getProject().getId()));
     }
     
-    public boolean canAccessUserWorkLogs(Long userId, String currentUserEmail) {
-        User currentUser = userRepository.findByEmail(currentUserEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        switch (currentUser.getRole()) {
-            case admin:
-                return true;
-            case pm:
-                // PM can view work logs for users in their projects
-                List<Project> pmProjects = projectRepository.findByPmEmail(currentUser.getEmail());
-                return pmProjects.stream()
-                        .anyMatch(project -> projectRepository.findProjectsByUserId(userId)
-                                .stream()
-                                .anyMatch(userProject -> userProject.getId().equals(project.getId())));
-            case dev:
-            case ba:
-            case test:
-                // Employee can only see their own work logs
-                return currentUser.getId().equals(userId);
-            default:
-                return false;
-        }
+    public boolean canAccessUserWorkLogs(Long userId) {
+        return accessContext.canAccessUserWorkLogs(userId);
     }
 }
@@ -0,0 +1,205 @@
+package org.viettel.vgov.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.viettel.vgov.dto.response.WorkloadIndexStatusResponseDto;
+import org.viettel.vgov.model.Project;
+import org.viettel.vgov.model.ProjectMember;
+import org.viettel.vgov.repository.ProjectMemberRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of each user's current workload and active project count, over active
+ * memberships of projects that are not closed. Workloads are kept in hundredths of a percent,
+ * matching the precision of project_members.workload_percentage.
+ * <p>
+ * The index is loaded at startup, and membership changes are applied once their transaction
+ * commits. It is local to this instance: changes made through other instances or directly in the
+ * database are only picked up by {@link #reload()}. It therefore only serves reads; the 100% workload
+ * limit is checked against project_members by ProjectMemberService.
+ * <p>
+ * Reloading and verifying hold the reload lock exclusively while they read project_members. A
+ * membership change holds it shared from just before its transaction commits until its delta is
+ * applied, so every delta either is in the rows read or is applied to the index once it is replaced.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class WorkloadIndexService {
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final ProjectMemberRepository projectMemberRepository;
+
+    private final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
+
+    private volatile Map<Long, Load> loads = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        reloadLock.writeLock().lock();
+        try {
+            loads = loadFromDatabase();
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    public BigDecimal getTotalWorkload(Long userId) {
+        Load load = loads.get(userId);
+        return load != null ? BigDecimal.valueOf(load.basisPoints, 2) : BigDecimal.ZERO;
+    }
+
+    public int getActiveProjectCount(Long userId) {
+        Load load = loads.get(userId);
+        return load != null ? load.projectCount : 0;
+    }
+
+    public void memberAdded(ProjectMember member) {
+        if (countsTowardsWorkload(member.getProject())) {
+            applyAfterCommit(member.getUser().getId(), toBasisPoints(member.getWorkloadPercentage()), 1);
+        }
+    }
+
+    public void workloadChanged(ProjectMember member, BigDecimal oldWorkload) {
+        if (countsTowardsWorkload(member.getProject())) {
+            applyAfterCommit(member.getUser().getId(),
+                    toBasisPoints(member.getWorkloadPercentage()) - toBasisPoints(oldWorkload), 0);
+        }
+    }
+
+    public void memberRemoved(ProjectMember member) {
+        if (countsTowardsWorkload(member.getProject())) {
+            applyAfterCommit(member.getUser().getId(), -toBasisPoints(member.getWorkloadPercentage()), -1);
+        }
+    }
+
+    /**
+     * Takes the active members of a project out of the index, for a project that is being closed
+     * or deleted. Must be called while the memberships still exist.
+     */
+    public void projectRemoved(Project project) {
+        if (!countsTowardsWorkload(project)) {
+            return;
+        }
+        for (ProjectMember member : projectMemberRepository.findByProjectIdAndIsActiveTrue(project.getId())) {
+            applyAfterCommit(member.getUser().getId(), -toBasisPoints(member.getWorkloadPercentage()), -1);
+        }
+    }
+
+    /**
+     * Compares the index with a fresh aggregation of project_members.
+     */
+    public WorkloadIndexStatusResponseDto verify() {
+        Map<Long, Load> expected;
+        Map<Long, Load> actual;
+        reloadLock.writeLock().lock();
+        try {
+            expected = loadFromDatabase();
+            actual = Map.copyOf(loads);
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+
+        Set<Long> userIds = new HashSet<>(expected.keySet());
+        userIds.addAll(actual.keySet());
+        List<Long> mismatchedUserIds = new ArrayList<>();
+        int mismatches = 0;
+        for (Long userId : userIds) {
+            if (!Load.EMPTY.or(expected.get(userId)).equals(Load.EMPTY.or(actual.get(userId)))) {
+                mismatches++;
+                if (mismatchedUserIds.size() < MAX_REPORTED_MISMATCHES) {
+                    mismatchedUserIds.add(userId);
+                }
+            }
+        }
+        return new WorkloadIndexStatusResponseDto(actual.size(), mismatches, mismatchedUserIds, mismatches == 0);
+    }
+
+    private Map<Long, Load> loadFromDatabase() {
+        Map<Long, Load> fresh = new ConcurrentHashMap<>();
+        for (Object[] row : projectMemberRepository.sumActiveWorkloadsByUser()) {
+            fresh.put((Long) row[0], new Load(toBasisPoints((BigDecimal) row[1]), ((Number) row[2]).intValue()));
+        }
+        return fresh;
+    }
+
+    private boolean countsTowardsWorkload(Project project) {
+        return project.getStatus() != Project.Status.Closed;
+    }
+
+    private void applyAfterCommit(Long userId, int basisPoints, int projectCount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reloadLock.readLock().lock();
+            try {
+                apply(userId, basisPoints, projectCount);
+            } finally {
+                reloadLock.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            private boolean locked;
+
+            // Waits for a reload in progress, whose read then cannot include this commit
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                reloadLock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                apply(userId, basisPoints, projectCount);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    locked = false;
+                    reloadLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    private void apply(Long userId, int basisPoints, int projectCount) {
+        loads.compute(userId, (id, load) -> {
+            Load updated = Load.EMPTY.or(load).plus(basisPoints, projectCount);
+            return updated.equals(Load.EMPTY) ? null : updated;
+        });
+    }
+
+    private static int toBasisPoints(BigDecimal workload) {
+        return workload == null ? 0 : workload.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    private record Load(int basisPoints, int projectCount) {
+
+        static final Load EMPTY = new Load(0, 0);
+
+        Load or(Load other) {
+            return other != null ? other : this;
+        }
+
+        Load plus(int basisPoints, int projectCount) {
+            return new Load(this.basisPoints + basisPoints, this.projectCount + projectCount);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+-- =====================================================
+-- NOTIFICATION PARTITIONING
+-- notifications is range-partitioned by created_at month. Hibernate creates it as a plain table, so it
+-- is recreated here, still empty; monthly partitions are created and dropped by NotificationRetentionService
+-- and rows outside them land in the default partition
+-- =====================================================
+DROP TABLE IF EXISTS notifications;
+
+CREATE TABLE notifications (
+    id                 bigint GENERATED BY DEFAULT AS IDENTITY,
+    user_id            bigint       NOT NULL REFERENCES users (id),
+    title              varchar(255) NOT NULL,
+    message            text         NOT NULL,
+    notification_type  varchar(50)  NOT NULL,
+    related_project_id bigint REFERENCES projects (id),
+    related_user_id    bigint REFERENCES users (id),
+    is_read            boolean,
+    occurrence_count   integer      NOT NULL DEFAULT 1,
+    last_occurred_at   timestamp(6),
+    created_at         timestamp(6) NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE notifications_default PARTITION OF notifications DEFAULT;
+
+-- Inbox pages, unread lists and counts per user, newest first
+CREATE INDEX idx_notifications_user_read_created ON notifications (user_id, is_read, created_at DESC);
+CREATE INDEX idx_notifications_related_project ON notifications (related_project_id);
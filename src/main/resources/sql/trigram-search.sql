@@ -0,0 +1,19 @@
+-- =====================================================
+-- SUBSTRING SEARCH ON PROJECTS AND USERS
+-- Case- and diacritic-insensitive matching backed by pg_trgm GIN indexes
+-- =====================================================
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() is only STABLE; index expressions need an IMMUTABLE wrapper with a fixed dictionary
+CREATE OR REPLACE FUNCTION search_normalize(text) RETURNS text
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+    AS 'SELECT lower(public.unaccent(''public.unaccent''::regdictionary, $1))';
+
+CREATE INDEX IF NOT EXISTS idx_projects_name_trgm ON projects USING GIN (search_normalize(project_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_projects_code_trgm ON projects USING GIN (search_normalize(project_code) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_projects_description_trgm ON projects USING GIN (search_normalize(description) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_users_full_name_trgm ON users USING GIN (search_normalize(full_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_trgm ON users USING GIN (search_normalize(email) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_users_employee_code_trgm ON users USING GIN (search_normalize(employee_code) gin_trgm_ops);
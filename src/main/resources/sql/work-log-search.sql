@@ -0,0 +1,11 @@
+-- =====================================================
+-- WORK LOG FULL-TEXT SEARCH
+-- The search document is computed by PostgreSQL and not mapped on the WorkLog entity;
+-- queries reach it through the fts_match and fts_rank functions
+-- =====================================================
+-- Index expressions need an IMMUTABLE function; the text search configuration is fixed for the same reason
+CREATE OR REPLACE FUNCTION work_log_document(task_feature text, work_description text) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    AS 'SELECT to_tsvector(''simple''::regconfig, coalesce($1, '''') || '' '' || coalesce($2, ''''))';
+
+CREATE INDEX IF NOT EXISTS idx_work_logs_document ON work_logs USING GIN (work_log_document(task_feature, work_description));
@@ -0,0 +1,121 @@
+package org.viettel.vgov.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.viettel.vgov.dto.response.AnalyticsResponseDto.MonthlyProjectStatusDto;
+import org.viettel.vgov.model.Project;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnalyticsServiceTimelineTest {
+
+	private static final LocalDate BASE = LocalDate.of(2015, 1, 1);
+
+	@Test
+	void matchesPerMonthScanOnRandomProjects() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			List<Project> projects = randomProjects(random, random.nextInt(50));
+			LocalDate startDate = BASE.plusDays(random.nextInt(4000));
+			LocalDate endDate = startDate.plusDays(random.nextInt(1500) - 100);
+
+			assertEquals(perMonthScan(projects, startDate, endDate),
+					AnalyticsService.countMonthlyProjectStatuses(projects, startDate, endDate));
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	void benchmarkAgainstPerMonthScan(TestReporter reporter) {
+		List<Project> projects = randomProjects(new Random(7), 20_000);
+		LocalDate startDate = LocalDate.of(2016, 1, 1);
+		LocalDate endDate = LocalDate.of(2025, 12, 31);
+
+		assertEquals(perMonthScan(projects, startDate, endDate),
+				AnalyticsService.countMonthlyProjectStatuses(projects, startDate, endDate));
+
+		Benchmarks.reportBestOf(reporter, "perMonthScanMillis", () -> perMonthScan(projects, startDate, endDate));
+		Benchmarks.reportBestOf(reporter, "sweepMillis",
+				() -> AnalyticsService.countMonthlyProjectStatuses(projects, startDate, endDate));
+	}
+
+	private static List<Project> randomProjects(Random random, int count) {
+		Project.Status[] statuses = Project.Status.values();
+		List<Project> projects = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Project project = new Project();
+			project.setStatus(statuses[random.nextInt(statuses.length)]);
+			if (random.nextInt(20) > 0) {
+				project.setStartDate(BASE.plusDays(random.nextInt(4500)));
+				if (random.nextInt(4) > 0) {
+					// Occasionally ends before it starts
+					project.setEndDate(project.getStartDate().plusDays(random.nextInt(1200) - 60));
+				}
+			}
+			projects.add(project);
+		}
+		return projects;
+	}
+
+	// The previous implementation: every project checked against every month
+	private static List<MonthlyProjectStatusDto> perMonthScan(List<Project> projects, LocalDate startDate, LocalDate endDate) {
+		List<MonthlyProjectStatusDto> monthlyData = new ArrayList<>();
+		LocalDate current = startDate.withDayOfMonth(1);
+		while (!current.isAfter(endDate.withDayOfMonth(1))) {
+			int completed = 0;
+			int inProgress = 0;
+			int planned = 0;
+			LocalDate monthStart = current;
+			LocalDate monthEnd = current.plusMonths(1).minusDays(1);
+
+			for (Project project : projects) {
+				LocalDate projectStart = project.getStartDate();
+				LocalDate projectEnd = project.getEndDate();
+				if (projectStart == null || projectStart.isAfter(monthEnd)) {
+					if (projectStart != null && projectStart.isAfter(monthEnd)) {
+						planned++;
+					}
+					continue;
+				}
+				if (projectEnd != null && projectEnd.isBefore(monthStart)) {
+					continue;
+				}
+				if (projectEnd != null && projectEnd.isBefore(monthEnd.plusDays(1))) {
+					completed++;
+				} else {
+					switch (project.getStatus()) {
+						case InProgress:
+						case Hold:
+							inProgress++;
+							break;
+						case Closed:
+							if (projectEnd == null || projectEnd.isAfter(monthEnd)) {
+								completed++;
+							} else {
+								inProgress++;
+							}
+							break;
+						case Presale:
+							planned++;
+							break;
+						default:
+							inProgress++;
+							break;
+					}
+				}
+			}
+
+			monthlyData.add(new MonthlyProjectStatusDto(
+					current.getYear() + "-" + String.format("%02d", current.getMonthValue()),
+					completed, inProgress, planned));
+			current = current.plusMonths(1);
+		}
+		return monthlyData;
+	}
+}
@@ -0,0 +1,25 @@
+package org.viettel.vgov.service;
+
+import org.junit.jupiter.api.TestReporter;
+
+/**
+ * Timing for the methods tagged "benchmark". Each task is run several times and the fastest run is
+ * published to the test report in milliseconds.
+ */
+final class Benchmarks {
+
+	private static final int RUNS = 5;
+
+	private Benchmarks() {
+	}
+
+	static void reportBestOf(TestReporter reporter, String key, Runnable task) {
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		reporter.publishEntry(key, String.format("%.2f", best / 1e6));
+	}
+}
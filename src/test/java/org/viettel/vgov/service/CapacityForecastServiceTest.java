@@ -0,0 +1,104 @@
+package org.viettel.vgov.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class CapacityForecastServiceTest {
+
+	private static final LocalDate START = LocalDate.of(2026, 1, 5);
+
+	@Test
+	void matchesDayByDayComputation() {
+		Random random = new Random(42);
+		for (int round = 0; round < 100; round++) {
+			int weeks = 1 + random.nextInt(60);
+			long[] userIds = userIds(1 + random.nextInt(700));
+			List<Object[]> rows = randomAllocations(random, userIds, weeks);
+
+			CapacityForecastService.Forecast forecast = CapacityForecastService.forecast(
+					CapacityForecastService.Allocations.load(userIds, rows, START, weeks * 7), weeks);
+
+			int[] expected = dayByDay(userIds, rows, weeks);
+			assertArrayEquals(expected, forecast.available);
+			long[] expectedTotals = new long[weeks];
+			int[] expectedOverallocated = new int[weeks];
+			for (int i = 0; i < expected.length; i++) {
+				if (expected[i] > 0) {
+					expectedTotals[i % weeks] += expected[i];
+				} else if (expected[i] < 0) {
+					expectedOverallocated[i % weeks]++;
+				}
+			}
+			assertArrayEquals(expectedTotals, forecast.totalAvailable);
+			assertArrayEquals(expectedOverallocated, forecast.overallocatedUsers);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	void benchmarkTenThousandUsers(TestReporter reporter) {
+		int weeks = 52;
+		long[] userIds = userIds(10_000);
+		List<Object[]> rows = randomAllocations(new Random(7), userIds, weeks);
+
+		reporter.publishEntry("allocations", String.valueOf(rows.size()));
+		Benchmarks.reportBestOf(reporter, "forecastMillis", () -> CapacityForecastService.forecast(
+				CapacityForecastService.Allocations.load(userIds, rows, START, weeks * 7), weeks));
+	}
+
+	private static long[] userIds(int count) {
+		long[] userIds = new long[count];
+		for (int i = 0; i < count; i++) {
+			userIds[i] = 2L * i + 1;
+		}
+		return userIds;
+	}
+
+	// Up to five memberships per user, some starting before or ending after the horizon
+	private static List<Object[]> randomAllocations(Random random, long[] userIds, int weeks) {
+		List<Object[]> rows = new ArrayList<>();
+		for (long userId : userIds) {
+			int memberships = random.nextInt(6);
+			for (int m = 0; m < memberships; m++) {
+				LocalDate joined = START.plusDays(random.nextInt(weeks * 7 + 60) - 40);
+				LocalDate left = random.nextBoolean() ? null : joined.plusDays(random.nextInt(200) - 10);
+				LocalDate projectEnd = random.nextBoolean() ? null : START.plusDays(random.nextInt(weeks * 7 + 60) - 40);
+				BigDecimal workload = BigDecimal.valueOf(random.nextInt(10001), 2);
+				rows.add(new Object[]{userId, workload, joined, left, projectEnd});
+			}
+		}
+		return rows;
+	}
+
+	private static int[] dayByDay(long[] userIds, List<Object[]> rows, int weeks) {
+		int[] available = new int[userIds.length * weeks];
+		Arrays.fill(available, 100_00 * 7);
+		for (Object[] row : rows) {
+			int u = Arrays.binarySearch(userIds, (Long) row[0]);
+			LocalDate joined = (LocalDate) row[2];
+			LocalDate left = (LocalDate) row[3];
+			LocalDate projectEnd = (LocalDate) row[4];
+			int basisPoints = ((BigDecimal) row[1]).movePointRight(2).intValueExact();
+			for (int day = 0; day < weeks * 7; day++) {
+				LocalDate date = START.plusDays(day);
+				boolean allocated = !date.isBefore(joined)
+						&& (left == null || date.isBefore(left))
+						&& (projectEnd == null || !date.isAfter(projectEnd));
+				if (allocated) {
+					available[u * weeks + day / 7] -= basisPoints;
+				}
+			}
+		}
+		return available;
+	}
+}
@@ -0,0 +1,118 @@
+package org.viettel.vgov.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.viettel.vgov.mapper.NotificationMapper;
+import org.viettel.vgov.repository.NotificationRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class NotificationStreamServiceTest {
+
+	private final CountDownLatch released = new CountDownLatch(1);
+	private ClientEmitter nextEmitter;
+
+	private NotificationStreamService service = newService(16, 10000);
+
+	@AfterEach
+	void shutdown() {
+		released.countDown();
+		service.shutdownStreamExecutor();
+	}
+
+	@Test
+	void stalledClientsDoNotDelayOthers() throws InterruptedException {
+		for (long userId = 1; userId <= 8; userId++) {
+			nextEmitter = new ClientEmitter(true);
+			service.connect(userId, null);
+		}
+		ClientEmitter reading = new ClientEmitter(false);
+		nextEmitter = reading;
+		service.connect(100L, null);
+
+		assertNotNull(reading.sent.poll(5, TimeUnit.SECONDS), "unread count not received");
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (anyConnected(1, 8) && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		for (long userId = 1; userId <= 8; userId++) {
+			assertFalse(service.hasConnections(userId), "stalled client " + userId + " still connected");
+		}
+		assertTrue(service.hasConnections(100L));
+	}
+
+	@Test
+	void connectionsBeyondTheDrainQueueAreDisconnected() {
+		service.shutdownStreamExecutor();
+		service = newService(1, 1);
+
+		// The first client holds the only drain thread and the second one waits in the queue
+		nextEmitter = new ClientEmitter(true);
+		service.connect(1L, null);
+		nextEmitter = new ClientEmitter(false);
+		service.connect(2L, null);
+		nextEmitter = new ClientEmitter(false);
+		service.connect(3L, null);
+
+		assertTrue(service.hasConnections(2L));
+		assertFalse(service.hasConnections(3L));
+	}
+
+	private NotificationStreamService newService(int drainThreads, int drainQueueCapacity) {
+		return new NotificationStreamService(
+				mock(NotificationRepository.class), mock(NotificationMapper.class),
+				mock(UnreadNotificationCountService.class),
+				Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofMinutes(5), 256, Duration.ofMillis(200),
+				drainThreads, drainQueueCapacity) {
+			@Override
+			SseEmitter newEmitter(long timeoutMillis) {
+				return nextEmitter;
+			}
+		};
+	}
+
+	private boolean anyConnected(long fromUserId, long toUserId) {
+		for (long userId = fromUserId; userId <= toUserId; userId++) {
+			if (service.hasConnections(userId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// A client whose every write blocks, as when it stops reading and its socket buffer is full
+	private class ClientEmitter extends SseEmitter {
+
+		private final boolean stalled;
+		private final BlockingQueue<SseEventBuilder> sent = new LinkedBlockingQueue<>();
+
+		private ClientEmitter(boolean stalled) {
+			this.stalled = stalled;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			if (stalled) {
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("Broken pipe");
+			}
+			sent.add(builder);
+		}
+	}
+}